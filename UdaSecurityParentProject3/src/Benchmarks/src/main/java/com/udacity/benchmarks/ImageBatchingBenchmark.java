@@ -0,0 +1,102 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.AwsImageService;
+import com.udacity.image.service.BatchingImageService;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+import software.amazon.awssdk.services.rekognition.model.Label;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Classifying one frame from each of several cameras through AwsImageService backed by a local
+ * stub client with a fixed response time, one frame at a time against all at once through a
+ * BatchingImageService.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageBatchingBenchmark {
+
+    @Param({"16"})
+    int cameras;
+
+    @Param({"20"})
+    int latencyMillis;
+
+    private AwsImageService awsImageService;
+    private BatchingImageService batchingImageService;
+    private final List<BufferedImage> frames = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        awsImageService = new AwsImageService(new StubRekognitionClient(TimeUnit.MILLISECONDS.toNanos(latencyMillis)));
+        batchingImageService = new BatchingImageService(awsImageService, cameras, 5, TimeUnit.MILLISECONDS, cameras);
+        for(int i = 0; i < cameras; i++) {
+            frames.add(new BufferedImage(640, 480, BufferedImage.TYPE_3BYTE_BGR));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        batchingImageService.close();
+    }
+
+    @Benchmark
+    public int oneAtATime() {
+        int cats = 0;
+        for(BufferedImage frame : frames) {
+            cats += awsImageService.imageContainsCat(frame, 50.0f) ? 1 : 0;
+        }
+        return cats;
+    }
+
+    @Benchmark
+    public int batched() {
+        List<CompletableFuture<Boolean>> verdicts = new ArrayList<>();
+        for(BufferedImage frame : frames) {
+            verdicts.add(batchingImageService.imageContainsCatAsync(frame, 50.0f));
+        }
+        int cats = 0;
+        for(CompletableFuture<Boolean> verdict : verdicts) {
+            cats += verdict.join() ? 1 : 0;
+        }
+        return cats;
+    }
+
+    /**
+     * Answers every request with a cat after the configured delay.
+     */
+    private static class StubRekognitionClient implements RekognitionClient {
+        private final long latencyNanos;
+
+        private StubRekognitionClient(long latencyNanos) {
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public DetectLabelsResponse detectLabels(DetectLabelsRequest detectLabelsRequest) {
+            LockSupport.parkNanos(latencyNanos);
+            return DetectLabelsResponse.builder().labels(Label.builder().name("Cat").confidence(99.0f).build()).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
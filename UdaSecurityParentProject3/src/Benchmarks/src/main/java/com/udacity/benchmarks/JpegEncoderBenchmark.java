@@ -0,0 +1,63 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.JpegEncoder;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.core.SdkBytes;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a camera frame into request bytes: the original ImageIO.write path against
+ * JpegEncoder. Run with -prof gc to compare bytes allocated per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpegEncoderBenchmark {
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_RGB"})
+    String imageType;
+
+    private BufferedImage frame;
+    private final JpegEncoder fullSizeEncoder = new JpegEncoder(0.75f, 0, 0);
+    private final JpegEncoder scaledEncoder = new JpegEncoder(0.85f, 1024, 1024);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int type = imageType.equals("TYPE_INT_RGB") ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_3BYTE_BGR;
+        frame = new BufferedImage(1280, 960, type);
+        //noise keeps the encoder from compressing the frame to almost nothing
+        Random random = new Random(42);
+        for(int y = 0; y < frame.getHeight(); y++) {
+            for(int x = 0; x < frame.getWidth(); x++) {
+                frame.setRGB(x, y, (x * y) ^ random.nextInt(64));
+            }
+        }
+    }
+
+    @Benchmark
+    public SdkBytes imageIoWrite() throws IOException {
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            ImageIO.write(frame, "jpg", os);
+            return SdkBytes.fromByteArray(os.toByteArray());
+        }
+    }
+
+    @Benchmark
+    public SdkBytes jpegEncoder() throws IOException {
+        return SdkBytes.fromByteArrayUnsafe(fullSizeEncoder.encode(frame));
+    }
+
+    @Benchmark
+    public SdkBytes jpegEncoderScaled() throws IOException {
+        return SdkBytes.fromByteArrayUnsafe(scaledEncoder.encode(frame));
+    }
+}
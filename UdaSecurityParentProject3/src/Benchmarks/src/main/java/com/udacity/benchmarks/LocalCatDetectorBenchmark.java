@@ -0,0 +1,52 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.LocalCatDetectorImageService;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time LocalCatDetectorImageService takes to score a camera frame, by frame size and thread
+ * budget. Compare with the few hundred milliseconds of a Rekognition round trip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalCatDetectorBenchmark {
+
+    @Param({"640", "1920"})
+    int frameWidth;
+
+    @Param({"1", "4"})
+    int threadBudget;
+
+    private BufferedImage frame;
+    private LocalCatDetectorImageService detector;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        frame = new BufferedImage(frameWidth, frameWidth * 3 / 4, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        for(int y = 0; y < frame.getHeight(); y++) {
+            for(int x = 0; x < frame.getWidth(); x++) {
+                frame.setRGB(x, y, (x * y) ^ random.nextInt(64));
+            }
+        }
+        detector = new LocalCatDetectorImageService(threadBudget);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        detector.close();
+    }
+
+    @Benchmark
+    public float catConfidence() {
+        return detector.catConfidence(frame);
+    }
+}
@@ -0,0 +1,86 @@
+package com.udacity.benchmarks;
+
+import com.udacity.security.data.PersistenceMode;
+import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Cost of sensor changes in PretendDatabaseSecurityRepositoryImpl as the number of sensors grows.
+ * Each trial works in its own preferences node, which is removed afterwards, so the application's
+ * saved sensors are never touched.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    int sensorCount;
+
+    @Param({"WRITE_THROUGH", "WRITE_BEHIND"})
+    PersistenceMode persistenceMode;
+
+    private Preferences prefs;
+    private PretendDatabaseSecurityRepositoryImpl securityRepository;
+    private Sensor[] sensors;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        prefs = Preferences.userRoot().node("com/udacity/benchmarks/" + UUID.randomUUID());
+
+        //filling in write-behind mode writes the sensors once instead of once per sensor
+        PretendDatabaseSecurityRepositoryImpl loader = new PretendDatabaseSecurityRepositoryImpl(
+                prefs, PersistenceMode.WRITE_BEHIND, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        List<Sensor> created = new ArrayList<>();
+        for(int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            loader.addSensor(sensor);
+            created.add(sensor);
+        }
+        loader.close();
+
+        securityRepository = new PretendDatabaseSecurityRepositoryImpl(
+                prefs, persistenceMode, Duration.ofMillis(250), Duration.ofSeconds(2));
+        sensors = securityRepository.getSensors().toArray(new Sensor[0]);
+        if(sensors.length != created.size()) {
+            throw new IllegalStateException("Expected " + created.size() + " sensors but loaded " + sensors.length);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws BackingStoreException {
+        securityRepository.close();
+        prefs.removeNode();
+        Preferences.userRoot().flush();
+    }
+
+    @Benchmark
+    public int addAndRemoveSensor() {
+        Sensor sensor = new Sensor("Benchmark sensor", SensorType.DOOR);
+        securityRepository.addSensor(sensor);
+        securityRepository.removeSensor(sensor);
+        return sensors.length;
+    }
+
+    @Benchmark
+    public Sensor updateSensor() {
+        Sensor sensor = sensors[next++ % sensors.length];
+        sensor.setActive(!sensor.getActive());
+        securityRepository.updateSensor(sensor);
+        return sensor;
+    }
+}
@@ -0,0 +1,87 @@
+package com.udacity.benchmarks;
+
+import com.udacity.image.service.FakeImageService;
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.service.ConcurrentSecurityService;
+import com.udacity.security.service.SecurityMetrics;
+import com.udacity.security.service.SecurityService;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the SecurityService operations on their own, over an in-memory repository.
+ *
+ * Sensor changes switch a sensor on and off again in one operation, so every invocation walks the
+ * same path: pending alarm on activation, back to no alarm on deactivation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityServiceBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    int sensorCount;
+
+    @Param({"plain", "concurrent"})
+    String implementation;
+
+    @Param({"false", "true"})
+    boolean metrics;
+
+    private SecurityService securityService;
+    private Sensor[] sensors;
+    private BufferedImage image;
+    private int next;
+    private boolean armedHome;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemorySecurityRepository securityRepository = new InMemorySecurityRepository();
+        sensors = new Sensor[sensorCount];
+        for(int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            securityRepository.addSensor(sensors[i]);
+        }
+        FakeImageService imageService = new FakeImageService();
+        securityService = implementation.equals("concurrent")
+                ? new ConcurrentSecurityService(securityRepository, imageService)
+                : new SecurityService(securityRepository, imageService);
+        securityService.setMetrics(metrics ? new SecurityMetrics() : SecurityMetrics.disabled());
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public AlarmStatus changeSensorActivationStatus() {
+        Sensor sensor = sensors[next++ % sensors.length];
+        securityService.changeSensorActivationStatus(sensor, true);
+        securityService.changeSensorActivationStatus(sensor, false);
+        return securityService.getAlarmStatus();
+    }
+
+    @Benchmark
+    public ArmingStatus setArmingStatus() {
+        armedHome = !armedHome;
+        securityService.setArmingStatus(armedHome ? ArmingStatus.ARMED_HOME : ArmingStatus.ARMED_AWAY);
+        return securityService.getArmingStatus();
+    }
+
+    @Benchmark
+    public boolean allSensorsInactive() {
+        return securityService.allSensorsInactive();
+    }
+
+    @Benchmark
+    public AlarmStatus processImage() {
+        securityService.processImage(image);
+        return securityService.getAlarmStatus();
+    }
+}
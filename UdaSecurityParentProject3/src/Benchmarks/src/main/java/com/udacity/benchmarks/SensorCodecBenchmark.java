@@ -0,0 +1,79 @@
+package com.udacity.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorCodec;
+import com.udacity.security.data.SensorType;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.util.Base64;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and storing the sensor list as PretendDatabaseSecurityRepositoryImpl does: the JSON
+ * written by earlier versions against the Base64 encoded binary format. coldLoad is the first
+ * load in a fresh JVM, as at application startup. The stored size of each format is printed
+ * during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorCodecBenchmark {
+
+    @Param({"1000", "100000"})
+    int sensorCount;
+
+    @Param({"JSON", "BINARY"})
+    String format;
+
+    private static final Type SENSOR_SET = new TypeToken<Set<Sensor>>() {
+    }.getType();
+
+    private final Gson gson = new Gson();
+    private Set<Sensor> sensors;
+    private String stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sensors = new TreeSet<>();
+        for(int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 4 == 0);
+            sensors.add(sensor);
+        }
+        stored = store();
+        System.out.println(format + " stores " + sensorCount + " sensors in " + stored.length() + " characters");
+    }
+
+    @Benchmark
+    public String store() {
+        if(format.equals("JSON")) {
+            return gson.toJson(sensors);
+        }
+        return Base64.getEncoder().encodeToString(SensorCodec.encode(sensors));
+    }
+
+    @Benchmark
+    public Set<Sensor> load() {
+        if(format.equals("JSON")) {
+            return gson.fromJson(stored, SENSOR_SET);
+        }
+        return SensorCodec.decode(Base64.getDecoder().decode(stored));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(5)
+    public Set<Sensor> coldLoad() {
+        return load();
+    }
+}
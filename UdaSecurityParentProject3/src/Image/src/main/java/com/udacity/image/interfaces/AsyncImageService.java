@@ -0,0 +1,19 @@
+package com.udacity.image.interfaces;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service that identifies images of cats without blocking the caller while the image is analyzed.
+ */
+public interface AsyncImageService extends ImageService {
+
+    /**
+     * Starts analyzing the image and returns immediately.
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum confidence, for example 90.0f for 90%, to consider for cat
+     * @return Future completed with true if the image contains a cat
+     */
+    CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold);
+
+}
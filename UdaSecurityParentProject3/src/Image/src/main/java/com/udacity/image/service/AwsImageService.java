@@ -1,24 +1,26 @@
 package com.udacity.image.service;
 
-import com.udacity.image.interfaces.ImageService;
+import com.udacity.image.interfaces.AsyncImageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -35,32 +37,76 @@ import java.util.stream.Collectors;
  *      aws.region=[an aws region of choice. For example: us-east-2]
  */
 
-public class AwsImageService implements ImageService {
+public class AwsImageService implements AsyncImageService {
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
     //aws recommendation is to maintain only a single instance of client objects
     private static RekognitionClient rekognitionClient;
+    private static RekognitionAsyncClient rekognitionAsyncClient;
+
+    //a request that takes longer than this, retries included, fails instead of holding up its thread
+    private static final Duration API_CALL_TIMEOUT = Duration.ofSeconds(10);
+
+    //frames are scaled to a size Rekognition still labels reliably, which also keeps requests small
+    private static final JpegEncoder jpegEncoder = new JpegEncoder(0.85f, 1024, 1024);
+
+    //set when a client is supplied directly, for example a local stub for load testing
+    private RekognitionClient injectedClient;
 
     public AwsImageService() {
         Properties props = new Properties();
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
+            if(is == null) {
+                log.error("Unable to initialize AWS Rekognition, no properties file found");
+                return;
+            }
             props.load(is);
         } catch (IOException ioe ) {
-            log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
+            log.error("Unable to initialize AWS Rekognition, properties file could not be read", ioe);
             return;
         }
 
         String awsId = props.getProperty("aws.id");
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
+        if(awsId == null || awsSecret == null || awsRegion == null) {
+            log.error("Unable to initialize AWS Rekognition, aws.id, aws.secret and aws.region must all be set");
+            return;
+        }
 
         AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
+        ClientOverrideConfiguration overrideConfiguration = ClientOverrideConfiguration.builder()
+                .apiCallTimeout(API_CALL_TIMEOUT)
+                .build();
         rekognitionClient = RekognitionClient.builder()
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
                 .region(Region.of(awsRegion))
+                .overrideConfiguration(overrideConfiguration)
+                .build();
+        rekognitionAsyncClient = RekognitionAsyncClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+                .region(Region.of(awsRegion))
+                .overrideConfiguration(overrideConfiguration)
                 .build();
     }
 
+    /**
+     * Creates a service that sends every request to the given client instead of the shared ones
+     * built from config.properties. Asynchronous requests run the client on the common pool.
+     * @param rekognitionClient Client to send requests to
+     */
+    public AwsImageService(RekognitionClient rekognitionClient) {
+        this.injectedClient = rekognitionClient;
+    }
+
+    /**
+     * Returns false if the clients could not be built, for example because config.properties is
+     * missing. Every request then fails with an IllegalStateException.
+     */
+    public boolean isConfigured() {
+        return injectedClient != null || rekognitionClient != null;
+    }
+
     /**
      * Returns true if the provided image contains a cat.
      * @param image Image to scan
@@ -68,17 +114,61 @@ public class AwsImageService implements ImageService {
      * @return
      */
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if(!isConfigured()) {
+            throw notConfigured();
+        }
+        DetectLabelsRequest detectLabelsRequest = buildRequest(image, confidenceThreshhold);
+        if(detectLabelsRequest == null) {
+            return false;
+        }
+        RekognitionClient client = injectedClient != null ? injectedClient : rekognitionClient;
+        DetectLabelsResponse response = client.detectLabels(detectLabelsRequest);
+        logLabelsForFun(response);
+        return containsCat(response);
+    }
+
+    /**
+     * Sends the image to Rekognition through the non-blocking client. The image is encoded on the
+     * calling thread; the request itself does not hold up the caller.
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
+     * @return Future completed with true if the image contains a cat
+     */
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        if(injectedClient != null) {
+            return CompletableFuture.supplyAsync(() -> imageContainsCat(image, confidenceThreshhold));
+        }
+        if(rekognitionAsyncClient == null) {
+            return CompletableFuture.failedFuture(notConfigured());
+        }
+        DetectLabelsRequest detectLabelsRequest = buildRequest(image, confidenceThreshhold);
+        if(detectLabelsRequest == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return rekognitionAsyncClient.detectLabels(detectLabelsRequest).thenApply(response -> {
+            logLabelsForFun(response);
+            return containsCat(response);
+        });
+    }
+
+    private DetectLabelsRequest buildRequest(BufferedImage image, float confidenceThreshhold) {
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        try {
+            //the encoder hands over a fresh array of exactly the JPEG bytes, so it does not need another copy
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(jpegEncoder.encode(image))).build();
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
-            return false;
+            return null;
         }
-        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
-        DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
-        logLabelsForFun(response);
+        return DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
+    }
+
+    private static IllegalStateException notConfigured() {
+        return new IllegalStateException("AWS Rekognition is not configured, see config.properties");
+    }
+
+    private static boolean containsCat(DetectLabelsResponse response) {
         return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
     }
 
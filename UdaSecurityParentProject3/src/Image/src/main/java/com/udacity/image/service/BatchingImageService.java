@@ -0,0 +1,215 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.AsyncImageService;
+import com.udacity.image.interfaces.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImageService front-end that gathers frames from any number of cameras into short batches and
+ * classifies each batch concurrently, instead of sending frames one at a time as they arrive.
+ *
+ * A batch is sent when it reaches the maximum size or when its oldest frame has waited for the
+ * maximum delay, whichever comes first. The frames of a batch are classified in parallel on a
+ * fixed number of dispatch threads, which also bounds the number of requests in flight, so size
+ * the pool to the HTTP connection pool of the wrapped client. The same image submitted more than
+ * once in a batch is only classified once. Every caller gets its own future, completed as soon as
+ * its frame's verdict is known.
+ *
+ * Batches are handed to the dispatch threads while holding the batch lock, so closing the service
+ * never overtakes a batch that was already taken: every frame accepted before close() is still
+ * classified, and frames submitted afterwards fail straight away.
+ */
+public class BatchingImageService implements AsyncImageService, AutoCloseable {
+
+    private final ImageService delegate;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final ExecutorService dispatcher;
+    private final ScheduledExecutorService timer;
+
+    //batch being filled, guarded by this
+    private List<PendingFrame> batch = new ArrayList<>();
+    private long batchGeneration;
+    private boolean closed;
+
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private record PendingFrame(BufferedImage image, float confidenceThreshhold, CompletableFuture<Boolean> verdict) {
+    }
+
+    /**
+     * @param delegate Service that classifies a single frame, called from the dispatch threads
+     * @param maxBatchSize Number of frames that triggers a batch immediately
+     * @param maxDelay Longest a frame may wait for its batch to fill, in the given unit
+     * @param concurrency Number of frames classified at the same time
+     */
+    public BatchingImageService(ImageService delegate, int maxBatchSize, long maxDelay, TimeUnit unit, int concurrency) {
+        if(maxBatchSize <= 0 || maxDelay < 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("Batch size and concurrency must be positive and the delay not negative");
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.dispatcher = Executors.newFixedThreadPool(concurrency, daemonThreads("image-batch-dispatch"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("image-batch-timer"));
+    }
+
+    /**
+     * Adds the frame to the current batch and waits for its verdict.
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        try {
+            return imageContainsCatAsync(image, confidenceThreshhold).join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the frame to the current batch and returns immediately.
+     * @return Future completed with the verdict, or failed with an IllegalStateException if the service has been closed
+     */
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        CompletableFuture<Boolean> verdict = new CompletableFuture<>();
+        synchronized(this) {
+            if(closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Image service has been closed"));
+            }
+            batch.add(new PendingFrame(image, confidenceThreshhold, verdict));
+            if(batch.size() >= maxBatchSize) {
+                dispatch(takeBatch());
+            } else if(batch.size() == 1) {
+                long generation = batchGeneration;
+                timer.schedule(() -> flush(generation), maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        frameCount.incrementAndGet();
+        return verdict;
+    }
+
+    /**
+     * Sends whatever is in the current batch without waiting for it to fill.
+     */
+    public synchronized void flush() {
+        dispatch(takeBatch());
+    }
+
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Number of frames actually sent to the wrapped service, after duplicates were merged.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Sends the frames still waiting, then stops the dispatch threads once they are classified.
+     */
+    @Override
+    public void close() {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            dispatch(takeBatch());
+            dispatcher.shutdown();
+        }
+        timer.shutdownNow();
+    }
+
+    //the timer only flushes the batch it was scheduled for; a batch sent early starts a new generation
+    private synchronized void flush(long generation) {
+        if(generation != batchGeneration) {
+            return;
+        }
+        dispatch(takeBatch());
+    }
+
+    private List<PendingFrame> takeBatch() {
+        List<PendingFrame> taken = batch;
+        batch = new ArrayList<>();
+        batchGeneration++;
+        return taken;
+    }
+
+    //must hold this; only queues work, so the lock is never held while a frame is classified
+    private void dispatch(List<PendingFrame> pending) {
+        if(pending.isEmpty()) {
+            return;
+        }
+        batchCount.incrementAndGet();
+        //frames for the same image and threshold share one request
+        Map<BufferedImage, List<PendingFrame>> byImage = new IdentityHashMap<>();
+        List<List<PendingFrame>> requests = new ArrayList<>();
+        for(PendingFrame frame : pending) {
+            List<PendingFrame> sameImage = frame.image() == null ? null : byImage.get(frame.image());
+            if(sameImage != null && sameImage.get(0).confidenceThreshhold() == frame.confidenceThreshhold()) {
+                sameImage.add(frame);
+                continue;
+            }
+            sameImage = new ArrayList<>();
+            sameImage.add(frame);
+            requests.add(sameImage);
+            if(frame.image() != null) {
+                byImage.putIfAbsent(frame.image(), sameImage);
+            }
+        }
+        for(List<PendingFrame> request : requests) {
+            requestCount.incrementAndGet();
+            try {
+                dispatcher.execute(() -> classify(request));
+            } catch (RejectedExecutionException e) {
+                request.forEach(frame -> frame.verdict().completeExceptionally(e));
+            }
+        }
+    }
+
+    private void classify(List<PendingFrame> request) {
+        PendingFrame first = request.get(0);
+        try {
+            boolean containsCat = delegate.imageContainsCat(first.image(), first.confidenceThreshhold());
+            request.forEach(frame -> frame.verdict().complete(containsCat));
+        } catch (RuntimeException e) {
+            request.forEach(frame -> frame.verdict().completeExceptionally(e));
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImageService decorator that remembers recent verdicts by a perceptual hash of the image, so a
+ * camera looking at an unchanged scene does not pay for a new classification on every frame.
+ *
+ * Frames are reduced to a 64-bit difference hash. A frame whose hash is within the configured
+ * Hamming distance of a cached frame, classified with the same confidence threshold and not
+ * older than the TTL, gets the cached verdict. The least recently used entry is evicted once the
+ * cache is full.
+ */
+public class CachingImageService implements ImageService {
+
+    private final ImageService delegate;
+    private final long ttlNanos;
+    private final int maxHammingDistance;
+    private final LinkedHashMap<Long, CachedVerdict> verdicts;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private record CachedVerdict(boolean containsCat, float confidenceThreshhold, long createdNanos) {
+    }
+
+    /**
+     * @param delegate Service that classifies frames missing from the cache
+     * @param maxEntries Number of verdicts to keep
+     * @param ttl How long a verdict may be reused, in the given unit
+     * @param maxHammingDistance Number of hash bits two frames may differ in and still count as the same scene
+     */
+    public CachingImageService(ImageService delegate, int maxEntries, long ttl, TimeUnit unit, int maxHammingDistance) {
+        if(maxEntries <= 0 || maxHammingDistance < 0 || maxHammingDistance > Long.SIZE) {
+            throw new IllegalArgumentException("Cache size must be positive and the Hamming distance between 0 and 64");
+        }
+        this.delegate = delegate;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxHammingDistance = maxHammingDistance;
+        this.verdicts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedVerdict> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if(image == null) {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        long hash = ImageSampling.differenceHash(image);
+        Boolean cached = lookup(hash, confidenceThreshhold);
+        if(cached != null) {
+            hitCount.incrementAndGet();
+            return cached;
+        }
+        missCount.incrementAndGet();
+        boolean containsCat = delegate.imageContainsCat(image, confidenceThreshhold);
+        synchronized(verdicts) {
+            verdicts.put(hash, new CachedVerdict(containsCat, confidenceThreshhold, System.nanoTime()));
+        }
+        return containsCat;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Finds a usable verdict for the hash: an exact match first, then the closest near-duplicate.
+     * Expired entries met along the way are dropped.
+     */
+    private Boolean lookup(long hash, float confidenceThreshhold) {
+        long now = System.nanoTime();
+        synchronized(verdicts) {
+            CachedVerdict exact = verdicts.get(hash);
+            if(exact != null && now - exact.createdNanos() <= ttlNanos && exact.confidenceThreshhold() == confidenceThreshhold) {
+                return exact.containsCat();
+            }
+            if(maxHammingDistance == 0) {
+                return null;
+            }
+            Map.Entry<Long, CachedVerdict> closest = null;
+            int closestDistance = maxHammingDistance + 1;
+            Iterator<Map.Entry<Long, CachedVerdict>> entries = verdicts.entrySet().iterator();
+            while(entries.hasNext()) {
+                Map.Entry<Long, CachedVerdict> entry = entries.next();
+                if(now - entry.getValue().createdNanos() > ttlNanos) {
+                    entries.remove();
+                    continue;
+                }
+                int distance = Long.bitCount(entry.getKey() ^ hash);
+                if(distance < closestDistance && entry.getValue().confidenceThreshhold() == confidenceThreshhold) {
+                    closest = entry;
+                    closestDistance = distance;
+                }
+            }
+            if(closest == null) {
+                return null;
+            }
+            //touch the entry so it counts as recently used
+            return verdicts.get(closest.getKey()).containsCat();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.AsyncImageService;
+import com.udacity.image.interfaces.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImageService that screens every frame with the cheap LocalCatDetectorImageService and only
+ * pays for the heavier detector, such as AwsImageService, when the screen is unsure.
+ *
+ * A frame scoring below the reject threshold is answered "no cat" by the screen alone, and one
+ * scoring at or above the accept threshold "cat". Frames in between are escalated to the detector
+ * with the caller's confidence threshold. By default the screen never accepts on its own, so
+ * every alarm is confirmed by the detector, and only rejects frames in which nothing has the
+ * texture of fur. Any higher reject threshold loses cats: on the synthetic scenes the screen was
+ * calibrated on, a cat lying on a carpet scores between 0.04 and 12, no higher than the same
+ * carpet without the cat, and a reject threshold of 10 would have dropped over 90% of them. The
+ * default rejects 60% of frames of an empty room and no frame with a cat. The counters give the
+ * share of frames passed on by each stage, for trading detector cost against missed cats when
+ * tuning the thresholds.
+ *
+ * A detector without an asynchronous API is called on the cascade's own threads, so it never
+ * blocks the screen's pool or the caller.
+ */
+public class CascadingImageService implements AsyncImageService {
+
+    //the screen scores exactly 0 when nothing in the frame has the texture of fur
+    public static final float DEFAULT_REJECT_BELOW = 0.01f;
+    public static final float DEFAULT_ACCEPT_AT = Float.POSITIVE_INFINITY;
+
+    private final LocalCatDetectorImageService screen;
+    private final ImageService detector;
+    private final float rejectBelow;
+    private final float acceptAt;
+    private final ExecutorService detectorExecutor;
+
+    private final AtomicLong screenedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong escalatedCount = new AtomicLong();
+    private final AtomicLong confirmedCount = new AtomicLong();
+
+    public CascadingImageService(LocalCatDetectorImageService screen, ImageService detector) {
+        this(screen, detector, DEFAULT_REJECT_BELOW, DEFAULT_ACCEPT_AT);
+    }
+
+    /**
+     * @param screen First stage, run on every frame
+     * @param detector Second stage, run on the frames the screen is unsure about
+     * @param rejectBelow Screen confidence (0-100) below which a frame has no cat without asking the detector
+     * @param acceptAt Screen confidence (0-100) at which a frame has a cat without asking the detector,
+     *                 or {@link Float#POSITIVE_INFINITY} to always ask
+     */
+    public CascadingImageService(LocalCatDetectorImageService screen, ImageService detector, float rejectBelow, float acceptAt) {
+        if(rejectBelow < 0 || rejectBelow > acceptAt) {
+            throw new IllegalArgumentException("Reject threshold must be between 0 and the accept threshold");
+        }
+        this.screen = screen;
+        this.detector = detector;
+        this.rejectBelow = rejectBelow;
+        this.acceptAt = acceptAt;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.detectorExecutor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "cascade-detector-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        Boolean screened = verdict(image == null ? null : screen.catConfidence(image));
+        if(screened != null) {
+            return screened;
+        }
+        return confirm(detector.imageContainsCat(image, confidenceThreshhold));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        CompletableFuture<Float> screening = image == null ? CompletableFuture.completedFuture(null) : screen.catConfidenceAsync(image);
+        return screening.thenCompose(confidence -> {
+            Boolean screened = verdict(confidence);
+            if(screened != null) {
+                return CompletableFuture.completedFuture(screened);
+            }
+            if(detector instanceof AsyncImageService asyncDetector) {
+                return asyncDetector.imageContainsCatAsync(image, confidenceThreshhold).thenApply(this::confirm);
+            }
+            return CompletableFuture.supplyAsync(() -> confirm(detector.imageContainsCat(image, confidenceThreshhold)), detectorExecutor);
+        });
+    }
+
+    public long getScreenedCount() {
+        return screenedCount.get();
+    }
+
+    /**
+     * Number of frames the screen answered "no cat" on its own.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Number of frames the screen answered "cat" on its own.
+     */
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    /**
+     * Number of frames sent on to the detector.
+     */
+    public long getEscalatedCount() {
+        return escalatedCount.get();
+    }
+
+    /**
+     * Number of escalated frames the detector found a cat in.
+     */
+    public long getConfirmedCount() {
+        return confirmedCount.get();
+    }
+
+    /**
+     * Share of screened frames passed on to the detector, from 0 to 1.
+     */
+    public double getScreenPassThroughRate() {
+        long screened = screenedCount.get();
+        return screened == 0 ? 0 : (double) escalatedCount.get() / screened;
+    }
+
+    /**
+     * Share of escalated frames the detector found a cat in, from 0 to 1.
+     */
+    public double getDetectorPassThroughRate() {
+        long escalated = escalatedCount.get();
+        return escalated == 0 ? 0 : (double) confirmedCount.get() / escalated;
+    }
+
+    /**
+     * @param confidence Screen confidence, or null for a missing frame, which is left to the detector as before
+     * @return The screen's verdict, or null if the frame has to go to the detector
+     */
+    private Boolean verdict(Float confidence) {
+        screenedCount.incrementAndGet();
+        if(confidence == null) {
+            escalatedCount.incrementAndGet();
+            return null;
+        }
+        if(confidence < rejectBelow) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        if(confidence >= acceptAt) {
+            acceptedCount.incrementAndGet();
+            return true;
+        }
+        escalatedCount.incrementAndGet();
+        return null;
+    }
+
+    private boolean confirm(boolean containsCat) {
+        if(containsCat) {
+            confirmedCount.incrementAndGet();
+        }
+        return containsCat;
+    }
+}
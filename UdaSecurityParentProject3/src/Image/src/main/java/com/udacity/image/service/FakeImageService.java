@@ -1,17 +1,23 @@
 package com.udacity.image.service;
 
-import com.udacity.image.interfaces.ImageService;
+import com.udacity.image.interfaces.AsyncImageService;
 
 import java.awt.image.BufferedImage;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service that tries to guess if an image displays a cat.
  */
-public class FakeImageService implements ImageService{
+public class FakeImageService implements AsyncImageService {
     private final Random r = new Random();
 
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
         return r.nextBoolean();
     }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        return CompletableFuture.completedFuture(imageContainsCat(image, confidenceThreshhold));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.ImageService;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * ImageService pipeline stage that skips classification of frames showing nothing new. Each frame
+ * is reduced to a small grayscale grid and compared with the grid of the last frame that was
+ * actually classified. Only when the share of grid cells whose brightness changed by more than
+ * the pixel threshold exceeds the change ratio is the frame forwarded; otherwise the previous
+ * verdict is returned.
+ *
+ * Comparing against the last classified frame, rather than the one just before, means a slow
+ * change still adds up until it is noticed. The grids are preallocated, so no memory is allocated
+ * per frame. Holds the state of a single camera feed, so use one instance per camera.
+ */
+public class FrameDifferenceImageService implements ImageService {
+
+    private final ImageService delegate;
+    private final int cols;
+    private final int rows;
+    private final int pixelThreshold;
+    private final float changedRatioThreshold;
+
+    private int[] reference;
+    private int[] current;
+    private boolean hasReference;
+    private boolean lastVerdict;
+    private float lastConfidenceThreshhold;
+
+    private long forwardedCount;
+    private long skippedCount;
+
+    public FrameDifferenceImageService(ImageService delegate) {
+        this(delegate, 32, 24, 24, 0.02f);
+    }
+
+    /**
+     * @param delegate Service that classifies the frames that changed
+     * @param cols Width of the comparison grid
+     * @param rows Height of the comparison grid
+     * @param pixelThreshold Brightness difference (0-255) at which a grid cell counts as changed
+     * @param changedRatioThreshold Share of changed cells (0-1) above which a frame is classified
+     */
+    public FrameDifferenceImageService(ImageService delegate, int cols, int rows, int pixelThreshold, float changedRatioThreshold) {
+        if(cols <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Grid size must be positive");
+        }
+        this.delegate = delegate;
+        this.cols = cols;
+        this.rows = rows;
+        this.pixelThreshold = pixelThreshold;
+        this.changedRatioThreshold = changedRatioThreshold;
+        this.reference = new int[cols * rows];
+        this.current = new int[cols * rows];
+    }
+
+    @Override
+    public synchronized boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if(image == null) {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        ImageSampling.sampleLuminance(image, cols, rows, current);
+        if(hasReference && confidenceThreshhold == lastConfidenceThreshhold && changedRatio() <= changedRatioThreshold) {
+            skippedCount++;
+            return lastVerdict;
+        }
+        forwardedCount++;
+        lastVerdict = delegate.imageContainsCat(image, confidenceThreshhold);
+        lastConfidenceThreshhold = confidenceThreshhold;
+        hasReference = true;
+        //the classified frame becomes the new reference
+        int[] swap = reference;
+        reference = current;
+        current = swap;
+        return lastVerdict;
+    }
+
+    public synchronized long getForwardedCount() {
+        return forwardedCount;
+    }
+
+    public synchronized long getSkippedCount() {
+        return skippedCount;
+    }
+
+    private float changedRatio() {
+        int changed = 0;
+        for(int i = 0; i < current.length; i++) {
+            if(Math.abs(current[i] - reference[i]) > pixelThreshold) {
+                changed++;
+            }
+        }
+        return (float) changed / current.length;
+    }
+}
@@ -0,0 +1,139 @@
+package com.udacity.image.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Helpers for reducing a camera frame to a small grid of grayscale values, which is all the cheap
+ * frame comparisons in this package need. Only a few pixels of each grid cell are read, so the
+ * cost depends on the grid size rather than the image resolution.
+ */
+final class ImageSampling {
+
+    //pixels sampled along each axis of a grid cell
+    private static final int SAMPLES_PER_CELL = 4;
+
+    private ImageSampling() {
+    }
+
+    /**
+     * Lays a cols x rows grid over the image and writes the average luminance (0-255) of each
+     * cell into out, row by row. Reads the raster's backing array directly for the pixel layouts
+     * ImageIO and Java2D usually produce, and falls back to getRGB for anything else. Nothing is
+     * allocated, so this is safe to call on every frame.
+     * @param out Array of at least cols * rows elements, reused by the caller between frames
+     */
+    static void sampleLuminance(BufferedImage image, int cols, int rows, int[] out) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        int type = image.getType();
+        int[] intPixels = null;
+        byte[] bytePixels = null;
+        int offset = 0;
+        int scanline = 0;
+        int pixelStride = 1;
+        if((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE)
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel) {
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            intPixels = buffer.getData();
+            scanline = sampleModel.getScanlineStride();
+            offset = buffer.getOffset() - raster.getSampleModelTranslateY() * scanline - raster.getSampleModelTranslateX();
+        } else if((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_BYTE_GRAY)
+                && raster.getSampleModel() instanceof PixelInterleavedSampleModel sampleModel) {
+            DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+            bytePixels = buffer.getData();
+            scanline = sampleModel.getScanlineStride();
+            pixelStride = sampleModel.getPixelStride();
+            offset = buffer.getOffset() - raster.getSampleModelTranslateY() * scanline - raster.getSampleModelTranslateX() * pixelStride;
+        }
+
+        for(int row = 0; row < rows; row++) {
+            for(int col = 0; col < cols; col++) {
+                int sum = 0;
+                for(int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = (int) (((long) row * SAMPLES_PER_CELL + sy) * height / ((long) rows * SAMPLES_PER_CELL));
+                    for(int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        int x = (int) (((long) col * SAMPLES_PER_CELL + sx) * width / ((long) cols * SAMPLES_PER_CELL));
+                        if(intPixels != null) {
+                            sum += luminance(intPixels[offset + y * scanline + x]);
+                        } else if(bytePixels != null && pixelStride == 3) {
+                            int i = offset + y * scanline + x * 3;
+                            sum += ((bytePixels[i + 2] & 0xff) * 77 + (bytePixels[i + 1] & 0xff) * 150 + (bytePixels[i] & 0xff) * 29) >> 8;
+                        } else if(bytePixels != null) {
+                            sum += bytePixels[offset + y * scanline + x] & 0xff;
+                        } else {
+                            sum += luminance(image.getRGB(x, y));
+                        }
+                    }
+                }
+                out[row * cols + col] = sum / (SAMPLES_PER_CELL * SAMPLES_PER_CELL);
+            }
+        }
+    }
+
+    /**
+     * Reads every step-th pixel of row y, starting at x = 0, into out as packed 0xRRGGBB values.
+     * Uses the raster's backing array for the same layouts as {@link #sampleLuminance} and getRGB
+     * for the rest.
+     * @param out Array of at least ceil(width / step) elements
+     * @return Number of pixels read
+     */
+    static int readRgbRow(BufferedImage image, int y, int step, int[] out) {
+        int width = image.getWidth();
+        Raster raster = image.getRaster();
+        int type = image.getType();
+        int count = 0;
+        if((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE)
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel) {
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            int[] pixels = buffer.getData();
+            int scanline = sampleModel.getScanlineStride();
+            int start = buffer.getOffset() + (y - raster.getSampleModelTranslateY()) * scanline - raster.getSampleModelTranslateX();
+            for(int x = 0; x < width; x += step) {
+                out[count++] = pixels[start + x] & 0xffffff;
+            }
+        } else if(type == BufferedImage.TYPE_3BYTE_BGR && raster.getSampleModel() instanceof PixelInterleavedSampleModel sampleModel) {
+            DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+            byte[] pixels = buffer.getData();
+            int scanline = sampleModel.getScanlineStride();
+            int start = buffer.getOffset() + (y - raster.getSampleModelTranslateY()) * scanline - raster.getSampleModelTranslateX() * 3;
+            for(int x = 0; x < width; x += step) {
+                int i = start + x * 3;
+                out[count++] = (pixels[i + 2] & 0xff) << 16 | (pixels[i + 1] & 0xff) << 8 | pixels[i] & 0xff;
+            }
+        } else {
+            for(int x = 0; x < width; x += step) {
+                out[count++] = image.getRGB(x, y) & 0xffffff;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Difference hash: 64 bits saying, for each cell of a 9x8 grid, whether it is darker than its
+     * right-hand neighbour. Near-identical frames get hashes that differ in only a few bits.
+     */
+    static long differenceHash(BufferedImage image) {
+        int[] grid = new int[9 * 8];
+        sampleLuminance(image, 9, 8, grid);
+        long hash = 0;
+        for(int row = 0; row < 8; row++) {
+            for(int col = 0; col < 8; col++) {
+                hash <<= 1;
+                if(grid[row * 9 + col] < grid[row * 9 + col + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    static int luminance(int rgb) {
+        return (((rgb >> 16) & 0xff) * 77 + ((rgb >> 8) & 0xff) * 150 + (rgb & 0xff) * 29) >> 8;
+    }
+}
@@ -0,0 +1,182 @@
+package com.udacity.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes frames to JPEG without the intermediate copies of ImageIO.write and a
+ * ByteArrayOutputStream. Every thread keeps its own ImageWriter, output buffer and scaling
+ * buffer, so once a thread has encoded a frame of a given size, further frames only allocate
+ * the returned byte array and the short-lived scanline copies the JDK writer makes internally.
+ *
+ * Frames larger than the maximum size are scaled down, keeping their aspect ratio, before they
+ * are encoded. Frames in any layout other than 3-byte BGR or gray, including ones with an alpha
+ * channel that ImageIO refuses to write as JPEG, are converted on the way.
+ */
+public final class JpegEncoder {
+
+    private final float quality;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final ThreadLocal<EncoderState> states;
+
+    /**
+     * @param quality JPEG quality between 0 and 1
+     * @param maxWidth Widest frame to encode, or 0 to never scale
+     * @param maxHeight Tallest frame to encode, or 0 to never scale
+     */
+    public JpegEncoder(float quality, int maxWidth, int maxHeight) {
+        if(quality < 0 || quality > 1 || maxWidth < 0 || maxHeight < 0) {
+            throw new IllegalArgumentException("Quality must be between 0 and 1 and the maximum size not negative");
+        }
+        this.quality = quality;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.states = ThreadLocal.withInitial(EncoderState::new);
+    }
+
+    /**
+     * Encodes the image and returns exactly the JPEG bytes. The array is not used again by the
+     * encoder, so it can be handed to SdkBytes.fromByteArrayUnsafe.
+     */
+    public byte[] encode(BufferedImage image) throws IOException {
+        EncoderState state = states.get();
+        BufferedImage source = state.prepare(image, maxWidth, maxHeight);
+        state.output.rewind();
+        state.writer.setOutput(state.output);
+        try {
+            state.writer.write(null, new IIOImage(source, null, null), state.param);
+        } finally {
+            state.writer.setOutput(null);
+        }
+        return state.output.toByteArray();
+    }
+
+    private class EncoderState {
+        private final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        private final ImageWriteParam param = writer.getDefaultWriteParam();
+        private final ReusableImageOutputStream output = new ReusableImageOutputStream();
+        private BufferedImage scaled;
+
+        private EncoderState() {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+        }
+
+        /**
+         * Returns the image itself when it can be encoded as is, otherwise draws it into the
+         * thread's scaling buffer at the target size.
+         */
+        private BufferedImage prepare(BufferedImage image, int maxWidth, int maxHeight) {
+            double scale = 1.0;
+            if(maxWidth > 0) {
+                scale = Math.min(scale, (double) maxWidth / image.getWidth());
+            }
+            if(maxHeight > 0) {
+                scale = Math.min(scale, (double) maxHeight / image.getHeight());
+            }
+            int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+            if(scale == 1.0 && isJpegCompatible(image.getType())) {
+                return image;
+            }
+            if(scaled == null || scaled.getWidth() != width || scaled.getHeight() != height) {
+                scaled = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            }
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            return scaled;
+        }
+    }
+
+    //the writer reads these layouts scanline by scanline; any other is converted by the writer
+    //through a full-frame copy, which drawing into the scaling buffer avoids
+    private static boolean isJpegCompatible(int type) {
+        return type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_BYTE_GRAY;
+    }
+
+    /**
+     * In-memory ImageOutputStream over a byte array that is kept and reused between frames,
+     * growing only when a frame encodes larger than any before it.
+     */
+    private static class ReusableImageOutputStream extends ImageOutputStreamImpl {
+        private byte[] buffer = new byte[64 * 1024];
+        private int length;
+
+        private void rewind() {
+            streamPos = 0;
+            flushedPos = 0;
+            bitOffset = 0;
+            length = 0;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + 1);
+            buffer[(int) streamPos++] = (byte) b;
+            length = Math.max(length, (int) streamPos);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + len);
+            System.arraycopy(b, off, buffer, (int) streamPos, len);
+            streamPos += len;
+            length = Math.max(length, (int) streamPos);
+        }
+
+        @Override
+        public int read() throws IOException {
+            bitOffset = 0;
+            if(streamPos >= length) {
+                return -1;
+            }
+            return buffer[(int) streamPos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            bitOffset = 0;
+            if(streamPos >= length) {
+                return -1;
+            }
+            int count = Math.min(len, length - (int) streamPos);
+            System.arraycopy(buffer, (int) streamPos, b, off, count);
+            streamPos += count;
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        private void ensureCapacity(long capacity) throws IOException {
+            if(capacity > Integer.MAX_VALUE - 8) {
+                throw new IOException("Encoded image is too large");
+            }
+            if(capacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.max(capacity, buffer.length * 2L));
+            }
+        }
+    }
+}
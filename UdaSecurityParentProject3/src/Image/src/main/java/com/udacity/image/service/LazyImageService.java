@@ -0,0 +1,86 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.AsyncImageService;
+import com.udacity.image.interfaces.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * ImageService that creates the service it delegates to on first use, so an expensive one, such
+ * as AwsImageService loading its configuration and building its Rekognition clients, costs
+ * nothing at startup and nothing at all if no frame is ever scanned.
+ *
+ * The delegate is created once, however many callers arrive at the same time. An asynchronous
+ * call that finds it not yet created does not wait for it on the caller's thread. If creating it
+ * fails, the calls waiting for it fail and the next call tries again.
+ */
+public class LazyImageService implements AsyncImageService {
+
+    private final Supplier<? extends ImageService> factory;
+    private volatile ImageService delegate;
+
+    //creation in progress, done or failed, guarded by this
+    private CompletableFuture<ImageService> creation;
+
+    /**
+     * @param factory Creates the delegate, called on a background thread
+     */
+    public LazyImageService(Supplier<? extends ImageService> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        ImageService service = delegate;
+        if(service == null) {
+            service = create().join();
+        }
+        return service.imageContainsCat(image, confidenceThreshhold);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        ImageService service = delegate;
+        if(service != null) {
+            return classify(service, image, confidenceThreshhold);
+        }
+        return create().thenCompose(created -> classify(created, image, confidenceThreshhold));
+    }
+
+    /**
+     * Returns true once the delegate has been created.
+     */
+    public boolean isCreated() {
+        return delegate != null;
+    }
+
+    /**
+     * Creates the delegate if it does not exist yet, without waiting for it.
+     * @return Future completed with the delegate once it exists, or failed if creating it failed
+     */
+    public CompletableFuture<ImageService> getDelegate() {
+        ImageService service = delegate;
+        return service != null ? CompletableFuture.completedFuture(service) : create();
+    }
+
+    private synchronized CompletableFuture<ImageService> create() {
+        //a failed creation is only replaced by the next call, so whoever waited on it sees it fail first
+        if(creation == null || creation.isCompletedExceptionally()) {
+            creation = CompletableFuture.supplyAsync(() -> {
+                ImageService created = factory.get();
+                delegate = created;
+                return created;
+            });
+        }
+        return creation;
+    }
+
+    private static CompletableFuture<Boolean> classify(ImageService service, BufferedImage image, float confidenceThreshhold) {
+        if(service instanceof AsyncImageService asyncService) {
+            return asyncService.imageContainsCatAsync(image, confidenceThreshhold);
+        }
+        return CompletableFuture.supplyAsync(() -> service.imageContainsCat(image, confidenceThreshhold));
+    }
+}
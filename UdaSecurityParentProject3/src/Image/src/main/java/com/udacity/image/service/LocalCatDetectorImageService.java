@@ -0,0 +1,303 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.AsyncImageService;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image Recognition Service that runs entirely on the local CPU, with no network or credentials.
+ *
+ * Rather than a trained network it scores a few hand-tuned features of the frame: how much of
+ * it shows a cat coat colour (ginger, brown, grey, black or white) with the fine, moderate
+ * texture of fur rather than flat paint or sharp man-made edges, whether that share of the frame
+ * is in the range a cat usually covers, and how compactly it is clustered. The features are
+ * combined by a logistic function into a confidence from 0 to 100, comparable to the confidence
+ * thresholds used with AwsImageService. It is far less accurate than Rekognition, but it answers
+ * in about a millisecond per frame on a single core, which makes it a good first stage in front
+ * of a remote detector and a fallback when the network is down.
+ *
+ * The weights were fitted to synthetic 320x240 indoor frames (see CatScenes in the tests), in
+ * which fur, carpet and upholstery all share the same kind of texture. On 100 frames of each kind,
+ * at a threshold of 50, it finds every cat of every coat colour in an otherwise empty room. It
+ * scores 21% of rooms with a brown sofa as a cat, and none of the empty, carpeted, dim or
+ * carpet-filled frames, so 4% of cat-free frames overall. A cat lying on a textured carpet is not
+ * found, because the carpet makes the frame look like one large furry surface. These numbers say
+ * how the features behave, not how accurate the detector is on real camera footage, which has not
+ * been measured.
+ *
+ * Large frames are read at a reduced resolution. The rows are split into strips that are scored
+ * in parallel on a private fork-join pool limited to the thread budget, reading the raster's
+ * backing array in tight loops the JIT can unroll and vectorize.
+ */
+public class LocalCatDetectorImageService implements AsyncImageService, AutoCloseable {
+
+    //frames are sampled at no more than this many pixels along each axis
+    private static final int MAX_SAMPLES_PER_AXIS = 320;
+
+    //share of the frame a cat usually covers, and how far above that the fit falls to zero
+    private static final float MIN_COVERAGE = 0.01f;
+    private static final float MAX_COVERAGE = 0.3f;
+    private static final float COVERAGE_FALLOFF = 0.4f;
+
+    //brightness gradient of fur: above the noise of a camera sensor, below a sharp edge
+    private static final int MIN_FUR_GRADIENT = 10;
+    private static final int MAX_FUR_GRADIENT = 70;
+
+    //spread of points scattered evenly over the whole frame, sqrt(1/12 + 1/12)
+    private static final double UNIFORM_SPREAD = Math.sqrt(1.0 / 6);
+
+    //logistic weights fitted to synthetic frames, see the class comment
+    private static final double BIAS = -5.3;
+    private static final double COVERAGE_WEIGHT = 2.3;
+    private static final double COMPACTNESS_WEIGHT = 8.7;
+    private static final double FUR_TEXTURE_WEIGHT = -4.2;
+
+    private final int threadBudget;
+    private final ForkJoinPool pool;
+
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    public LocalCatDetectorImageService() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * @param threadBudget Most threads used to score frames, shared by all concurrent callers
+     */
+    public LocalCatDetectorImageService(int threadBudget) {
+        if(threadBudget <= 0) {
+            throw new IllegalArgumentException("Thread budget must be positive");
+        }
+        this.threadBudget = threadBudget;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ForkJoinPool(threadBudget, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("cat-detector-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return catConfidence(image) >= confidenceThreshhold;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        return catConfidenceAsync(image).thenApply(confidence -> confidence >= confidenceThreshhold);
+    }
+
+    /**
+     * Same as {@link #catConfidence(BufferedImage)}, but scores the frame on the detector's own threads.
+     */
+    public CompletableFuture<Float> catConfidenceAsync(BufferedImage image) {
+        return CompletableFuture.supplyAsync(() -> catConfidence(image), pool);
+    }
+
+    /**
+     * Scores the frame.
+     * @return Confidence from 0 to 100 that the image shows a cat, exactly 0 if nothing in it has
+     *         the texture of fur
+     */
+    public float catConfidence(BufferedImage image) {
+        if(image == null) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int step = Math.max(1, (Math.max(image.getWidth(), image.getHeight()) + MAX_SAMPLES_PER_AXIS - 1) / MAX_SAMPLES_PER_AXIS);
+        int sampleRows = (image.getHeight() + step - 1) / step;
+        int rowsPerStrip = Math.max(16, (sampleRows + threadBudget - 1) / threadBudget);
+        FeatureTask task = new FeatureTask(image, step, 0, sampleRows, rowsPerStrip);
+        Features features = sampleRows <= rowsPerStrip || ForkJoinTask.getPool() == pool ? task.compute() : pool.invoke(task);
+        float confidence = features.confidence();
+        frameCount.incrementAndGet();
+        totalNanos.addAndGet(System.nanoTime() - start);
+        return confidence;
+    }
+
+    public int getThreadBudget() {
+        return threadBudget;
+    }
+
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    /**
+     * Average time spent scoring a frame, in nanoseconds.
+     */
+    public long getAverageNanos() {
+        long frames = frameCount.get();
+        return frames == 0 ? 0 : totalNanos.get() / frames;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Totals over the sampled pixels of one strip, or of the whole frame once strips are merged.
+     */
+    private static class Features {
+        private long samples;
+        private long coatPixels;
+        private long furPixels;
+        //moments of the fur pixel positions, scaled to 0-1
+        private double sumX;
+        private double sumY;
+        private double sumXX;
+        private double sumYY;
+
+        private Features merge(Features other) {
+            samples += other.samples;
+            coatPixels += other.coatPixels;
+            furPixels += other.furPixels;
+            sumX += other.sumX;
+            sumY += other.sumY;
+            sumXX += other.sumXX;
+            sumYY += other.sumYY;
+            return this;
+        }
+
+        private float confidence() {
+            if(samples == 0 || furPixels == 0) {
+                return 0;
+            }
+            float coverage = (float) furPixels / samples;
+            double coverageFit;
+            if(coverage < MIN_COVERAGE) {
+                coverageFit = coverage / MIN_COVERAGE;
+            } else if(coverage > MAX_COVERAGE) {
+                coverageFit = Math.max(0, 1 - (coverage - MAX_COVERAGE) / COVERAGE_FALLOFF);
+            } else {
+                coverageFit = 1;
+            }
+            double meanX = sumX / furPixels;
+            double meanY = sumY / furPixels;
+            double spread = Math.sqrt(Math.max(0, sumXX / furPixels - meanX * meanX) + Math.max(0, sumYY / furPixels - meanY * meanY));
+            double compactness = Math.max(0, 1 - spread / UNIFORM_SPREAD);
+            double furTexture = (double) furPixels / coatPixels;
+            return sigmoid(BIAS + COVERAGE_WEIGHT * coverageFit + COMPACTNESS_WEIGHT * compactness + FUR_TEXTURE_WEIGHT * furTexture);
+        }
+
+        private static float sigmoid(double z) {
+            return (float) (100 / (1 + Math.exp(-z)));
+        }
+    }
+
+    /**
+     * Scores a range of sample rows, splitting it in half until it is no larger than a strip.
+     */
+    private static class FeatureTask extends RecursiveTask<Features> {
+        private final BufferedImage image;
+        private final int step;
+        private final int fromRow;
+        private final int toRow;
+        private final int rowsPerStrip;
+
+        private FeatureTask(BufferedImage image, int step, int fromRow, int toRow, int rowsPerStrip) {
+            this.image = image;
+            this.step = step;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.rowsPerStrip = rowsPerStrip;
+        }
+
+        @Override
+        protected Features compute() {
+            if(toRow - fromRow > rowsPerStrip) {
+                int middle = (fromRow + toRow) >>> 1;
+                FeatureTask lower = new FeatureTask(image, step, middle, toRow, rowsPerStrip);
+                lower.fork();
+                Features upper = new FeatureTask(image, step, fromRow, middle, rowsPerStrip).compute();
+                return upper.merge(lower.join());
+            }
+            return scoreStrip();
+        }
+
+        private Features scoreStrip() {
+            Features features = new Features();
+            int height = image.getHeight();
+            int columns = (image.getWidth() + step - 1) / step;
+            int totalRows = (height + step - 1) / step;
+            int[] row = new int[columns];
+            int[] below = new int[columns];
+            int[] luminance = new int[columns];
+            int[] belowLuminance = new int[columns];
+            ImageSampling.readRgbRow(image, fromRow * step, step, below);
+            toLuminance(below, belowLuminance, columns);
+            for(int r = fromRow; r < toRow; r++) {
+                int[] swap = row;
+                row = below;
+                below = swap;
+                swap = luminance;
+                luminance = belowLuminance;
+                belowLuminance = swap;
+                //the last row of the frame is compared with itself, so it counts as flat vertically
+                if(r + 1 < totalRows) {
+                    ImageSampling.readRgbRow(image, (r + 1) * step, step, below);
+                    toLuminance(below, belowLuminance, columns);
+                } else {
+                    System.arraycopy(luminance, 0, belowLuminance, 0, columns);
+                }
+                double y = (double) r / totalRows;
+                for(int c = 0; c < columns; c++) {
+                    features.samples++;
+                    int rgb = row[c];
+                    if(!isCoatColour(rgb)) {
+                        continue;
+                    }
+                    features.coatPixels++;
+                    int l = luminance[c];
+                    int right = c + 1 < columns ? luminance[c + 1] : l;
+                    int gradient = Math.abs(l - right) + Math.abs(l - belowLuminance[c]);
+                    if(gradient >= MIN_FUR_GRADIENT && gradient <= MAX_FUR_GRADIENT) {
+                        double x = (double) c / columns;
+                        features.furPixels++;
+                        features.sumX += x;
+                        features.sumY += y;
+                        features.sumXX += x * x;
+                        features.sumYY += y * y;
+                    }
+                }
+            }
+            return features;
+        }
+
+        private static void toLuminance(int[] rgb, int[] out, int count) {
+            for(int i = 0; i < count; i++) {
+                out[i] = ImageSampling.luminance(rgb[i]);
+            }
+        }
+
+        /**
+         * Ginger and brown coats are red-dominant with moderate saturation; grey, black and white
+         * coats are unsaturated. Pure black and blown-out white are too common elsewhere to count.
+         */
+        private static boolean isCoatColour(int rgb) {
+            int r = (rgb >> 16) & 0xff;
+            int g = (rgb >> 8) & 0xff;
+            int b = rgb & 0xff;
+            int l = (r * 77 + g * 150 + b * 29) >> 8;
+            if(l < 15 || l > 235) {
+                return false;
+            }
+            int max = Math.max(r, Math.max(g, b));
+            int min = Math.min(r, Math.min(g, b));
+            if(max - min < 30) {
+                return true;
+            }
+            return r >= g && g >= b && r - b >= 25 && r - b <= 150 && l >= 40 && l <= 220;
+        }
+    }
+}
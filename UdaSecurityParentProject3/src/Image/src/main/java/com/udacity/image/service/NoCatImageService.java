@@ -0,0 +1,41 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.AsyncImageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImageService that reports no cat in any frame, for ResilientImageService to fall back on when
+ * a wrong guess from a local detector is worse than no answer. Every frame it answers is one
+ * nobody looked at, so it logs a warning for the first and every hundredth after that.
+ */
+public class NoCatImageService implements AsyncImageService {
+    private static final Logger log = LoggerFactory.getLogger(NoCatImageService.class);
+
+    private final AtomicLong frameCount = new AtomicLong();
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        long frames = frameCount.incrementAndGet();
+        if(frames % 100 == 1) {
+            log.warn("No image classification available, reporting no cat ({} frames so far)", frames);
+        }
+        return false;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        return CompletableFuture.completedFuture(imageContainsCat(image, confidenceThreshhold));
+    }
+
+    /**
+     * Number of frames answered without being classified.
+     */
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+}
@@ -0,0 +1,407 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.ImageService;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImageService pipeline stage that sends the delegate only the parts of a frame where something
+ * moved, instead of the whole frame.
+ *
+ * Each frame is reduced to a small grayscale grid and compared with the grid of the previous
+ * frame. Neighbouring changed cells are grouped into regions, which are padded by a cell, cropped
+ * from the frame and scaled down to at most the maximum crop size. A frame with no motion keeps
+ * the previous verdict. A cat found earlier stays found while something moves elsewhere in the
+ * frame; once motion touches the part of the frame the cat was found in, that part is classified
+ * again together with the motion. When there is no previous frame, or the motion is spread over
+ * too many regions or too much of the frame, the whole frame is sent instead, in one piece unless
+ * it is larger than the delegate accepts, and then in as few evenly spread tiles as fit. The
+ * crops or tiles are classified in parallel on a private fork-join pool, and the frame contains a
+ * cat if any of them does.
+ *
+ * Holds the state of a single camera feed, so use one instance per camera.
+ */
+public class RegionOfInterestImageService implements ImageService, AutoCloseable {
+
+    private final ImageService delegate;
+    private final int cols;
+    private final int rows;
+    private final int pixelThreshold;
+    private final int maxRegions;
+    private final float maxRegionRatio;
+    private final int maxCropSize;
+    private final int maxInputSize;
+    private final ForkJoinPool pool;
+
+    //motion grids and last verdict, guarded by this
+    private int[] previous;
+    private int[] current;
+    private final int[] queue;
+    private final int[] component;
+    private boolean hasPrevious;
+    private boolean hasVerdict;
+    private boolean lastVerdict;
+    private float lastConfidenceThreshhold;
+    //parts of the frame, in pixels, in which the last verdict found a cat
+    private List<Rectangle> catRegions = List.of();
+
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final AtomicLong regionCount = new AtomicLong();
+    private final AtomicLong tileCount = new AtomicLong();
+    private final AtomicLong framePixels = new AtomicLong();
+    private final AtomicLong sentPixels = new AtomicLong();
+
+    public RegionOfInterestImageService(ImageService delegate) {
+        this(delegate, 32, 24, 24, 4, 0.5f, 640, 0, 4);
+    }
+
+    /**
+     * @param delegate Service that classifies the crops and tiles
+     * @param cols Width of the motion grid
+     * @param rows Height of the motion grid
+     * @param pixelThreshold Brightness difference (0-255) at which a grid cell counts as moving
+     * @param maxRegions Most regions cropped from a frame before the whole frame is sent instead
+     * @param maxRegionRatio Share of the frame (0-1) the regions may cover before the whole frame is sent instead
+     * @param maxCropSize Longest side of a crop after scaling
+     * @param maxInputSize Longest side of a whole frame the delegate accepts, or 0 if it accepts
+     *                     any size; larger frames are sent in tiles no larger than this
+     * @param concurrency Number of crops or tiles classified at the same time
+     */
+    public RegionOfInterestImageService(ImageService delegate, int cols, int rows, int pixelThreshold, int maxRegions,
+                                        float maxRegionRatio, int maxCropSize, int maxInputSize, int concurrency) {
+        if(cols <= 0 || rows <= 0 || maxRegions <= 0 || maxCropSize <= 0 || concurrency <= 0) {
+            throw new IllegalArgumentException("Grid size, region count, crop size and concurrency must be positive");
+        }
+        if(maxInputSize < 0) {
+            throw new IllegalArgumentException("Input size limit must not be negative");
+        }
+        this.delegate = delegate;
+        this.cols = cols;
+        this.rows = rows;
+        this.pixelThreshold = pixelThreshold;
+        this.maxRegions = maxRegions;
+        this.maxRegionRatio = maxRegionRatio;
+        this.maxCropSize = maxCropSize;
+        this.maxInputSize = maxInputSize == 0 ? Integer.MAX_VALUE : maxInputSize;
+        this.previous = new int[cols * rows];
+        this.current = new int[cols * rows];
+        this.queue = new int[cols * rows];
+        this.component = new int[cols * rows];
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ForkJoinPool(concurrency, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("region-classifier-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if(image == null) {
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }
+        frameCount.incrementAndGet();
+        framePixels.addAndGet((long) image.getWidth() * image.getHeight());
+        List<Rectangle> parts;
+        boolean tiled;
+        List<Rectangle> stillCats = new ArrayList<>();
+        synchronized(this) {
+            List<Rectangle> regions = findRegions(image);
+            boolean sameThreshold = hasVerdict && confidenceThreshhold == lastConfidenceThreshhold;
+            if(regions != null && regions.isEmpty() && sameThreshold) {
+                skippedCount.incrementAndGet();
+                return lastVerdict;
+            }
+            if(regions != null && !regions.isEmpty()) {
+                parts = new ArrayList<>(regions);
+                if(sameThreshold) {
+                    //a cat the motion does not touch is still there; one it touches is looked for again
+                    for(Rectangle cat : catRegions) {
+                        boolean touched = false;
+                        for(int i = 0; i < parts.size(); i++) {
+                            if(parts.get(i).intersects(cat)) {
+                                parts.set(i, parts.get(i).union(cat));
+                                touched = true;
+                            }
+                        }
+                        if(!touched) {
+                            stillCats.add(cat);
+                        }
+                    }
+                }
+                regionCount.addAndGet(parts.size());
+                tiled = false;
+            } else {
+                parts = tiles(image.getWidth(), image.getHeight());
+                tileCount.addAndGet(parts.size());
+                tiled = true;
+            }
+        }
+        List<Rectangle> found = new CopyOnWriteArrayList<>();
+        PartTask task = new PartTask(image, parts, tiled, 0, parts.size(), confidenceThreshhold, found);
+        if(parts.size() == 1) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        found.addAll(stillCats);
+        boolean containsCat = !found.isEmpty();
+        synchronized(this) {
+            catRegions = List.copyOf(found);
+            lastVerdict = containsCat;
+            lastConfidenceThreshhold = confidenceThreshhold;
+            hasVerdict = true;
+        }
+        return containsCat;
+    }
+
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    /**
+     * Number of frames that showed no motion and kept the previous verdict.
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Number of motion regions cropped and classified.
+     */
+    public long getRegionCount() {
+        return regionCount.get();
+    }
+
+    /**
+     * Number of tiles classified when whole frames were sent.
+     */
+    public long getTileCount() {
+        return tileCount.get();
+    }
+
+    /**
+     * Pixels sent to the delegate as a share of the pixels in all frames received.
+     */
+    public double getPayloadRatio() {
+        long frames = framePixels.get();
+        return frames == 0 ? 0 : (double) sentPixels.get() / frames;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Compares the frame with the previous one and groups the changed grid cells into regions,
+     * given in pixels of the frame.
+     * @return The regions, empty if nothing moved, or null if the whole frame should be sent
+     */
+    private List<Rectangle> findRegions(BufferedImage image) {
+        ImageSampling.sampleLuminance(image, cols, rows, current);
+        boolean compare = hasPrevious;
+        int[] swap = previous;
+        previous = current;
+        current = swap;
+        hasPrevious = true;
+        if(!compare) {
+            return null;
+        }
+        //current now holds the older grid; label moving cells with -1, then by component
+        for(int i = 0; i < component.length; i++) {
+            component[i] = Math.abs(previous[i] - current[i]) > pixelThreshold ? -1 : 0;
+        }
+        List<int[]> boxes = new ArrayList<>();
+        for(int start = 0; start < component.length; start++) {
+            if(component[start] == -1) {
+                boxes.add(floodFill(start, boxes.size() + 1));
+            }
+        }
+        mergeOverlapping(boxes);
+        if(boxes.size() > maxRegions) {
+            return null;
+        }
+        List<Rectangle> regions = new ArrayList<>(boxes.size());
+        long area = 0;
+        for(int[] box : boxes) {
+            int x0 = (int) ((long) box[0] * image.getWidth() / cols);
+            int y0 = (int) ((long) box[1] * image.getHeight() / rows);
+            int x1 = (int) ((long) (box[2] + 1) * image.getWidth() / cols);
+            int y1 = (int) ((long) (box[3] + 1) * image.getHeight() / rows);
+            regions.add(new Rectangle(x0, y0, x1 - x0, y1 - y0));
+            area += (long) (x1 - x0) * (y1 - y0);
+        }
+        if(area > maxRegionRatio * image.getWidth() * image.getHeight()) {
+            return null;
+        }
+        return regions;
+    }
+
+    /**
+     * Labels the moving cells connected to start, including diagonally, and returns their
+     * bounding box padded by one cell as {minCol, minRow, maxCol, maxRow}.
+     */
+    private int[] floodFill(int start, int label) {
+        int[] box = {cols, rows, -1, -1};
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        component[start] = label;
+        while(head < tail) {
+            int cell = queue[head++];
+            int col = cell % cols;
+            int row = cell / cols;
+            box[0] = Math.min(box[0], col);
+            box[1] = Math.min(box[1], row);
+            box[2] = Math.max(box[2], col);
+            box[3] = Math.max(box[3], row);
+            for(int dy = -1; dy <= 1; dy++) {
+                for(int dx = -1; dx <= 1; dx++) {
+                    int c = col + dx;
+                    int r = row + dy;
+                    if(c >= 0 && c < cols && r >= 0 && r < rows && component[r * cols + c] == -1) {
+                        component[r * cols + c] = label;
+                        queue[tail++] = r * cols + c;
+                    }
+                }
+            }
+        }
+        box[0] = Math.max(0, box[0] - 1);
+        box[1] = Math.max(0, box[1] - 1);
+        box[2] = Math.min(cols - 1, box[2] + 1);
+        box[3] = Math.min(rows - 1, box[3] + 1);
+        return box;
+    }
+
+    //padding can make separate regions overlap; merge those so no area is sent twice
+    private static void mergeOverlapping(List<int[]> boxes) {
+        boolean merged = true;
+        while(merged) {
+            merged = false;
+            for(int i = 0; i < boxes.size() && !merged; i++) {
+                for(int j = i + 1; j < boxes.size(); j++) {
+                    int[] a = boxes.get(i);
+                    int[] b = boxes.get(j);
+                    if(a[0] <= b[2] && b[0] <= a[2] && a[1] <= b[3] && b[1] <= a[3]) {
+                        a[0] = Math.min(a[0], b[0]);
+                        a[1] = Math.min(a[1], b[1]);
+                        a[2] = Math.max(a[2], b[2]);
+                        a[3] = Math.max(a[3], b[3]);
+                        boxes.remove(j);
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Covers the frame with as few tiles no larger than the delegate accepts as possible, spread
+     * evenly so any overlap is shared between them. A frame the delegate accepts whole is one tile.
+     */
+    private List<Rectangle> tiles(int width, int height) {
+        int[] xs = tileOffsets(width);
+        int[] ys = tileOffsets(height);
+        int tileWidth = Math.min(maxInputSize, width);
+        int tileHeight = Math.min(maxInputSize, height);
+        List<Rectangle> tiles = new ArrayList<>(xs.length * ys.length);
+        for(int y : ys) {
+            for(int x : xs) {
+                tiles.add(new Rectangle(x, y, tileWidth, tileHeight));
+            }
+        }
+        return tiles;
+    }
+
+    private int[] tileOffsets(int length) {
+        if(length <= maxInputSize) {
+            return new int[] {0};
+        }
+        int count = (length + maxInputSize - 1) / maxInputSize;
+        int[] offsets = new int[count];
+        for(int i = 0; i < count; i++) {
+            offsets[i] = (int) ((long) i * (length - maxInputSize) / (count - 1));
+        }
+        return offsets;
+    }
+
+    /**
+     * Crops and classifies a range of parts, splitting it in half until a single part is left,
+     * and adds the parts found to contain a cat to found.
+     */
+    private class PartTask extends RecursiveAction {
+        private final BufferedImage image;
+        private final List<Rectangle> parts;
+        private final boolean tiled;
+        private final int from;
+        private final int to;
+        private final float confidenceThreshhold;
+        private final List<Rectangle> found;
+
+        private PartTask(BufferedImage image, List<Rectangle> parts, boolean tiled, int from, int to, float confidenceThreshhold,
+                         List<Rectangle> found) {
+            this.image = image;
+            this.parts = parts;
+            this.tiled = tiled;
+            this.from = from;
+            this.to = to;
+            this.confidenceThreshhold = confidenceThreshhold;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PartTask(image, parts, tiled, from, middle, confidenceThreshhold, found),
+                        new PartTask(image, parts, tiled, middle, to, confidenceThreshhold, found));
+                return;
+            }
+            Rectangle part = parts.get(from);
+            boolean containsCat;
+            if(tiled && parts.size() == 1) {
+                //the frame is a single tile and goes to the delegate as it is
+                sentPixels.addAndGet((long) part.width * part.height);
+                containsCat = delegate.imageContainsCat(image, confidenceThreshhold);
+            } else {
+                containsCat = delegate.imageContainsCat(crop(part), confidenceThreshhold);
+            }
+            if(containsCat) {
+                found.add(part);
+            }
+        }
+
+        //regions are scaled down to the crop size, tiles are already small enough and only copied
+        private BufferedImage crop(Rectangle part) {
+            int limit = tiled ? maxInputSize : maxCropSize;
+            double scale = Math.min(1.0, (double) limit / Math.max(part.width, part.height));
+            int width = Math.max(1, (int) Math.round(part.width * scale));
+            int height = Math.max(1, (int) Math.round(part.height * scale));
+            BufferedImage cropped = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D g = cropped.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(image, 0, 0, width, height, part.x, part.y, part.x + part.width, part.y + part.height, null);
+            } finally {
+                g.dispose();
+            }
+            sentPixels.addAndGet((long) width * height);
+            return cropped;
+        }
+    }
+}
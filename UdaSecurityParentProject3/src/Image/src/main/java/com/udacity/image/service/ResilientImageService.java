@@ -0,0 +1,324 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.AsyncImageService;
+import com.udacity.image.interfaces.ImageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImageService decorator that keeps a slow, throttled or failing remote detector, such as
+ * AwsImageService, from holding up the caller. Whenever the delegate cannot give an answer in
+ * time the frame is classified by the fallback service instead, so every call returns within
+ * the timeout plus the fallback's own time. The one exception is a LazyImageService delegate
+ * that has not been created yet: the first calls wait for it to be created, and the timeout
+ * starts once it exists. Failing to create it counts as a failed request.
+ *
+ * Requests to the delegate are limited by a token bucket, and frames arriving with the bucket
+ * empty go straight to the fallback. Each request has a timeout, and at most a fixed number run
+ * at once, whether the delegate is asynchronous or not. A request the caller stopped waiting for
+ * still counts until the delegate answers it, so a hanging delegate cannot pile up requests.
+ * A circuit breaker keeps the outcome of the most recent requests: once the window is
+ * full and the share of failed or slow ones reaches the threshold, the circuit opens and every
+ * frame goes to the fallback. After the open duration a single trial request is let through,
+ * which closes the circuit again if it succeeds in time.
+ */
+public class ResilientImageService implements AsyncImageService, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ResilientImageService.class);
+
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    private final ImageService delegate;
+    private final ImageService fallback;
+    private final long timeoutNanos;
+    private final long slowCallNanos;
+    private final float failureRateThreshold;
+    private final long openNanos;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+
+    //token bucket, guarded by this
+    private final double permitsPerNano;
+    private final int burst;
+    private double tokens;
+    private long refilledNanos;
+
+    //circuit breaker, guarded by this; outcomes is a ring of the latest calls, true for failures
+    private final boolean[] outcomes;
+    private int outcomeCount;
+    private int nextOutcome;
+    private int failureCount;
+    private CircuitState state = CircuitState.CLOSED;
+    private long openedNanos;
+    private boolean trialInFlight;
+
+    private final AtomicLong delegateCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong openCount = new AtomicLong();
+
+    public ResilientImageService(ImageService delegate, ImageService fallback) {
+        this(delegate, fallback, 5, 10, Duration.ofSeconds(2), 8, Duration.ofSeconds(1), 20, 0.5f, Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param delegate Service to protect
+     * @param fallback Service that classifies the frames the delegate does not, which should be quick and local
+     * @param permitsPerSecond Rate at which requests to the delegate are allowed on average
+     * @param burst Number of requests allowed at once after a quiet period
+     * @param timeout Longest to wait for the delegate before using the fallback
+     * @param maxConcurrentCalls Number of requests to the delegate in flight at the same time
+     * @param slowCallThreshold Duration after which a request counts as a failure for the circuit breaker, even if it succeeds
+     * @param windowSize Number of recent requests the circuit breaker judges the failure rate by
+     * @param failureRateThreshold Share (0-1) of failed or slow requests in the window that opens the circuit
+     * @param openDuration Time the circuit stays open before a trial request is let through
+     */
+    public ResilientImageService(ImageService delegate, ImageService fallback, double permitsPerSecond, int burst,
+                                 Duration timeout, int maxConcurrentCalls, Duration slowCallThreshold, int windowSize,
+                                 float failureRateThreshold, Duration openDuration) {
+        if(permitsPerSecond <= 0 || burst <= 0 || maxConcurrentCalls <= 0 || windowSize <= 0) {
+            throw new IllegalArgumentException("Rate, burst, concurrency and window size must be positive");
+        }
+        if(failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("Failure rate threshold must be above 0 and at most 1");
+        }
+        this.delegate = delegate;
+        this.fallback = fallback;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledNanos = System.nanoTime();
+        this.timeoutNanos = timeout.toNanos();
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.outcomes = new boolean[windowSize];
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.inFlight = new Semaphore(maxConcurrentCalls);
+        AtomicInteger threadCount = new AtomicInteger();
+        //the semaphore bounds the requests, so this never runs more than maxConcurrentCalls threads
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "resilient-image-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        Boolean containsCat = callDelegate(image, confidenceThreshhold).join();
+        if(containsCat != null) {
+            return containsCat;
+        }
+        fallbackCount.incrementAndGet();
+        return fallback.imageContainsCat(image, confidenceThreshhold);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        return callDelegate(image, confidenceThreshhold).thenCompose(containsCat -> {
+            if(containsCat != null) {
+                return CompletableFuture.completedFuture(containsCat);
+            }
+            fallbackCount.incrementAndGet();
+            if(fallback instanceof AsyncImageService asyncFallback) {
+                return asyncFallback.imageContainsCatAsync(image, confidenceThreshhold);
+            }
+            return CompletableFuture.completedFuture(fallback.imageContainsCat(image, confidenceThreshhold));
+        });
+    }
+
+    public synchronized CircuitState getCircuitState() {
+        return state;
+    }
+
+    /**
+     * Number of requests sent to the delegate.
+     */
+    public long getDelegateCount() {
+        return delegateCount.get();
+    }
+
+    /**
+     * Number of frames classified by the fallback, for whatever reason.
+     */
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    /**
+     * Number of frames sent to the fallback because the token bucket was empty or the most
+     * requests were already in flight.
+     */
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * Number of times the circuit has opened.
+     */
+    public long getOpenCount() {
+        return openCount.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Asks the delegate if the circuit and rate limit allow it.
+     * @return Future completed with the delegate's verdict, or with null if the fallback has to answer
+     */
+    private CompletableFuture<Boolean> callDelegate(BufferedImage image, float confidenceThreshhold) {
+        boolean trial;
+        synchronized(this) {
+            long now = System.nanoTime();
+            if(state == CircuitState.OPEN && now - openedNanos >= openNanos) {
+                state = CircuitState.HALF_OPEN;
+            }
+            if(state == CircuitState.OPEN || (state == CircuitState.HALF_OPEN && trialInFlight)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if(!inFlight.tryAcquire()) {
+                rateLimitedCount.incrementAndGet();
+                return CompletableFuture.completedFuture(null);
+            }
+            if(!takeToken(now)) {
+                inFlight.release();
+                rateLimitedCount.incrementAndGet();
+                return CompletableFuture.completedFuture(null);
+            }
+            trial = state == CircuitState.HALF_OPEN;
+            trialInFlight |= trial;
+        }
+        if(delegate instanceof LazyImageService lazy && !lazy.isCreated()) {
+            //building the client is not the request the timeout is for, so the clock starts once it exists
+            return lazy.getDelegate().handle((created, error) -> error).thenCompose(error -> error == null
+                    ? send(image, confidenceThreshhold, trial)
+                    : timed(CompletableFuture.failedFuture(error), trial));
+        }
+        return send(image, confidenceThreshhold, trial);
+    }
+
+    /**
+     * Sends a request the circuit and rate limit have already allowed.
+     */
+    private CompletableFuture<Boolean> send(BufferedImage image, float confidenceThreshhold, boolean trial) {
+        CompletableFuture<Boolean> request;
+        try {
+            if(delegate instanceof AsyncImageService asyncDelegate) {
+                request = asyncDelegate.imageContainsCatAsync(image, confidenceThreshhold);
+            } else {
+                request = CompletableFuture.supplyAsync(() -> delegate.imageContainsCat(image, confidenceThreshhold), executor);
+            }
+        } catch (RejectedExecutionException e) {
+            //closed
+            inFlight.release();
+            synchronized(this) {
+                trialInFlight &= !trial;
+            }
+            rateLimitedCount.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        delegateCount.incrementAndGet();
+        return timed(request, trial);
+    }
+
+    /**
+     * Waits up to the timeout for a request that holds a slot, and records how it went.
+     */
+    private CompletableFuture<Boolean> timed(CompletableFuture<Boolean> request, boolean trial) {
+        long start = System.nanoTime();
+        //the slot is held until the delegate itself answers, not just until the caller gives up
+        request.whenComplete((containsCat, error) -> inFlight.release());
+        return request.copy().orTimeout(timeoutNanos, TimeUnit.NANOSECONDS).handle((containsCat, error) -> {
+            long elapsed = System.nanoTime() - start;
+            if(error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if(cause instanceof TimeoutException) {
+                    timeoutCount.incrementAndGet();
+                    log.warn("Image classification timed out after {} ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+                } else {
+                    errorCount.incrementAndGet();
+                    log.warn("Image classification failed: {}", cause.toString());
+                    log.debug("Image classification failure", cause);
+                }
+            }
+            recordOutcome(error != null || elapsed > slowCallNanos, trial);
+            return error == null ? containsCat : null;
+        });
+    }
+
+    private boolean takeToken(long now) {
+        tokens = Math.min(burst, tokens + (now - refilledNanos) * permitsPerNano);
+        refilledNanos = now;
+        if(tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    private synchronized void recordOutcome(boolean failed, boolean trial) {
+        if(trial) {
+            trialInFlight = false;
+            if(failed) {
+                open();
+            } else {
+                state = CircuitState.CLOSED;
+                outcomeCount = 0;
+                nextOutcome = 0;
+                failureCount = 0;
+                log.info("Image classification circuit closed");
+            }
+            return;
+        }
+        if(state != CircuitState.CLOSED) {
+            //a request started before the circuit opened says nothing about now
+            return;
+        }
+        if(outcomeCount == outcomes.length) {
+            failureCount -= outcomes[nextOutcome] ? 1 : 0;
+        } else {
+            outcomeCount++;
+        }
+        outcomes[nextOutcome] = failed;
+        failureCount += failed ? 1 : 0;
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+        if(outcomeCount == outcomes.length && failureCount >= failureRateThreshold * outcomes.length) {
+            open();
+        }
+    }
+
+    //must hold this
+    private void open() {
+        state = CircuitState.OPEN;
+        openedNanos = System.nanoTime();
+        openCount.incrementAndGet();
+        log.warn("Image classification circuit opened, using the fallback for {} ms", TimeUnit.NANOSECONDS.toMillis(openNanos));
+    }
+}
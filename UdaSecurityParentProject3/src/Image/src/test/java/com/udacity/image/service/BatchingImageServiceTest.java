@@ -0,0 +1,152 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.ImageService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the frame batching front-end.
+ */
+public class BatchingImageServiceTest {
+
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+    //frames wider than 10 pixels contain a cat
+    private final ImageService delegate = (image, threshold) -> {
+        delegateCalls.incrementAndGet();
+        return image.getWidth() > 10;
+    };
+
+    //Tests that a full batch is sent straight away and each caller gets its own verdict
+    @Test
+    @DisplayName("Batch 1")
+    public void fullBatch_dispatchedImmediately() throws Exception {
+        BatchingImageService service = new BatchingImageService(delegate, 3, 1, TimeUnit.MINUTES, 2);
+        CompletableFuture<Boolean> small = service.imageContainsCatAsync(frame(5), 50f);
+        CompletableFuture<Boolean> large = service.imageContainsCatAsync(frame(20), 50f);
+        CompletableFuture<Boolean> other = service.imageContainsCatAsync(frame(30), 50f);
+        assertFalse(small.get(5, TimeUnit.SECONDS));
+        assertTrue(large.get(5, TimeUnit.SECONDS));
+        assertTrue(other.get(5, TimeUnit.SECONDS));
+        assertEquals(1, service.getBatchCount());
+        assertEquals(3, service.getRequestCount());
+        service.close();
+    }
+
+    //Tests that a batch that never fills is sent once its oldest frame has waited the maximum delay
+    @Test
+    @DisplayName("Batch 2")
+    public void partialBatch_dispatchedAfterDelay() throws Exception {
+        BatchingImageService service = new BatchingImageService(delegate, 10, 50, TimeUnit.MILLISECONDS, 2);
+        CompletableFuture<Boolean> verdict = service.imageContainsCatAsync(frame(20), 50f);
+        assertTrue(verdict.get(5, TimeUnit.SECONDS));
+        assertEquals(1, service.getBatchCount());
+        service.close();
+    }
+
+    //Tests that the same image and threshold submitted twice in a batch is classified once
+    @Test
+    @DisplayName("Batch 3")
+    public void duplicateFrames_classifiedOnce() throws Exception {
+        BatchingImageService service = new BatchingImageService(delegate, 3, 1, TimeUnit.MINUTES, 2);
+        BufferedImage image = frame(20);
+        CompletableFuture<Boolean> first = service.imageContainsCatAsync(image, 50f);
+        CompletableFuture<Boolean> second = service.imageContainsCatAsync(image, 50f);
+        CompletableFuture<Boolean> otherThreshold = service.imageContainsCatAsync(image, 90f);
+        CompletableFuture.allOf(first, second, otherThreshold).get(5, TimeUnit.SECONDS);
+        assertEquals(2, service.getRequestCount());
+        assertEquals(2, delegateCalls.get());
+        service.close();
+    }
+
+    //Tests that a failing classification fails every future waiting on it
+    @Test
+    @DisplayName("Batch 4")
+    public void delegateFailure_failsFutures() {
+        BatchingImageService service = new BatchingImageService((image, threshold) -> {
+            throw new IllegalStateException("service unavailable");
+        }, 1, 1, TimeUnit.MINUTES, 1);
+        CompletableFuture<Boolean> verdict = service.imageContainsCatAsync(frame(20), 50f);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> verdict.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertThrows(IllegalStateException.class, () -> service.imageContainsCat(frame(20), 50f));
+        service.close();
+    }
+
+    //Tests that closing classifies frames already accepted and fails later ones without throwing
+    @Test
+    @DisplayName("Batch 5")
+    public void close_classifiesPendingFrames_andFailsLaterOnes() throws Exception {
+        BatchingImageService service = new BatchingImageService(delegate, 10, 1, TimeUnit.MINUTES, 2);
+        CompletableFuture<Boolean> pending = service.imageContainsCatAsync(frame(20), 50f);
+        service.close();
+        assertTrue(pending.get(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Boolean> late = service.imageContainsCatAsync(frame(20), 50f);
+        assertTrue(late.isCompletedExceptionally());
+        CompletionException e = assertThrows(CompletionException.class, late::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertThrows(IllegalStateException.class, () -> service.imageContainsCat(frame(20), 50f));
+    }
+
+    //Tests that every future completes when the service is closed while frames are being submitted
+    @Test
+    @DisplayName("Batch 6")
+    public void closeDuringSubmission_everyFutureCompletes() throws InterruptedException {
+        for(int round = 0; round < 50; round++) {
+            BatchingImageService service = new BatchingImageService(delegate, 4, 1, TimeUnit.MINUTES, 2);
+            ConcurrentLinkedQueue<CompletableFuture<Boolean>> verdicts = new ConcurrentLinkedQueue<>();
+            ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for(int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                        for(int i = 0; i < 100; i++) {
+                            verdicts.add(service.imageContainsCatAsync(frame(20), 50f));
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            Thread.sleep(1);
+            service.close();
+            for(Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(errors.isEmpty(), () -> "Submitter failed: " + errors.peek());
+            for(CompletableFuture<Boolean> verdict : verdicts) {
+                try {
+                    assertTrue(verdict.get(5, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertInstanceOf(IllegalStateException.class, e.getCause());
+                } catch (TimeoutException e) {
+                    fail("Round " + round + ": a frame was never classified");
+                }
+            }
+        }
+    }
+
+    private static BufferedImage frame(int width) {
+        return TestFrames.solid(width, 10, Color.GRAY);
+    }
+}
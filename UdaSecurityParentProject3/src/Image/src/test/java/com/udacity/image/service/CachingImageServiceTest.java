@@ -0,0 +1,105 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.ImageService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the perceptual-hash verdict cache.
+ */
+public class CachingImageServiceTest {
+
+    //9x8 cells line up with the difference hash grid, so each cell drives exactly one hash bit
+    private static final BufferedImage BRIGHTENING = TestFrames.grid(9, 8, 10, (col, row) -> 20 + col * 25);
+    private static final BufferedImage DARKENING = TestFrames.grid(9, 8, 10, (col, row) -> 220 - col * 25);
+    private static final BufferedImage STRIPED = TestFrames.grid(9, 8, 10, (col, row) -> (col + row) % 2 == 0 ? 40 : 200);
+
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+    private final ImageService delegate = (image, threshold) -> {
+        delegateCalls.incrementAndGet();
+        return true;
+    };
+
+    //Tests that the same frame is classified once and then answered from the cache
+    @Test
+    @DisplayName("Cache 1")
+    public void sameFrame_secondCallIsHit() {
+        CachingImageService service = new CachingImageService(delegate, 16, 1, TimeUnit.MINUTES, 0);
+        assertTrue(service.imageContainsCat(BRIGHTENING, 50f));
+        assertTrue(service.imageContainsCat(TestFrames.copy(BRIGHTENING), 50f));
+        assertEquals(1, delegateCalls.get());
+        assertEquals(1, service.getHitCount());
+        assertEquals(1, service.getMissCount());
+    }
+
+    //Tests that a different scene, or the same scene at another confidence threshold, is a miss
+    @Test
+    @DisplayName("Cache 2")
+    public void differentSceneOrThreshold_isMiss() {
+        CachingImageService service = new CachingImageService(delegate, 16, 1, TimeUnit.MINUTES, 8);
+        service.imageContainsCat(BRIGHTENING, 50f);
+        service.imageContainsCat(DARKENING, 50f);
+        service.imageContainsCat(BRIGHTENING, 90f);
+        assertEquals(3, delegateCalls.get());
+        assertEquals(0, service.getHitCount());
+    }
+
+    //Tests that a frame a few hash bits away is a hit only within the configured Hamming distance
+    @Test
+    @DisplayName("Cache 3")
+    public void nearDuplicate_hitOnlyWithinHammingDistance() {
+        //one cell made brighter than its right-hand neighbour flips a single hash bit
+        BufferedImage nearDuplicate = TestFrames.copy(BRIGHTENING);
+        TestFrames.fill(nearDuplicate, 30, 30, 10, 10, new Color(250, 250, 250));
+        int distance = Long.bitCount(ImageSampling.differenceHash(BRIGHTENING) ^ ImageSampling.differenceHash(nearDuplicate));
+        assertEquals(1, distance);
+
+        CachingImageService exact = new CachingImageService(delegate, 16, 1, TimeUnit.MINUTES, 0);
+        exact.imageContainsCat(BRIGHTENING, 50f);
+        exact.imageContainsCat(nearDuplicate, 50f);
+        assertEquals(0, exact.getHitCount());
+
+        CachingImageService tolerant = new CachingImageService(delegate, 16, 1, TimeUnit.MINUTES, 2);
+        tolerant.imageContainsCat(BRIGHTENING, 50f);
+        tolerant.imageContainsCat(nearDuplicate, 50f);
+        assertEquals(1, tolerant.getHitCount());
+        assertEquals(3, delegateCalls.get());
+    }
+
+    //Tests that a verdict older than the TTL is not reused, exactly or as a near-duplicate
+    @Test
+    @DisplayName("Cache 4")
+    public void expiredVerdict_isMiss() throws InterruptedException {
+        CachingImageService service = new CachingImageService(delegate, 16, 50, TimeUnit.MILLISECONDS, 4);
+        service.imageContainsCat(BRIGHTENING, 50f);
+        Thread.sleep(100);
+        service.imageContainsCat(BRIGHTENING, 50f);
+        assertEquals(2, delegateCalls.get());
+        assertEquals(0, service.getHitCount());
+    }
+
+    //Tests that the least recently used verdict is evicted once the cache is full
+    @Test
+    @DisplayName("Cache 5")
+    public void fullCache_evictsLeastRecentlyUsed() {
+        CachingImageService service = new CachingImageService(delegate, 2, 1, TimeUnit.MINUTES, 0);
+        service.imageContainsCat(BRIGHTENING, 50f);
+        service.imageContainsCat(DARKENING, 50f);
+        //touching the first frame leaves the second as least recently used
+        service.imageContainsCat(BRIGHTENING, 50f);
+        service.imageContainsCat(STRIPED, 50f);
+        assertEquals(3, delegateCalls.get());
+
+        service.imageContainsCat(BRIGHTENING, 50f);
+        assertEquals(3, delegateCalls.get());
+        service.imageContainsCat(DARKENING, 50f);
+        assertEquals(4, delegateCalls.get());
+    }
+}
@@ -0,0 +1,113 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.ImageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for screening frames locally before asking the heavier detector.
+ */
+public class CascadingImageServiceTest {
+
+    private static final BufferedImage EMPTY_WALL = TestFrames.solid(320, 240, new Color(230, 225, 210));
+
+    private final LocalCatDetectorImageService screen = new LocalCatDetectorImageService(1);
+    private final AtomicInteger detectorCalls = new AtomicInteger();
+    private final ImageService detector = (image, threshold) -> {
+        detectorCalls.incrementAndGet();
+        return true;
+    };
+
+    @AfterEach
+    void close() {
+        screen.close();
+    }
+
+    //Tests that a frame with nothing furry is rejected by the screen and a cat is confirmed by the detector
+    @Test
+    @DisplayName("Cascade 1")
+    public void defaultThresholds_rejectEmptyFrame_escalateCat() {
+        CascadingImageService service = new CascadingImageService(screen, detector);
+        assertFalse(service.imageContainsCat(EMPTY_WALL, 50f));
+        assertEquals(0, detectorCalls.get());
+        assertTrue(service.imageContainsCat(CatScenes.catInRoom(new Random(1), CatScenes.Coat.GINGER), 50f));
+        assertEquals(1, detectorCalls.get());
+        assertEquals(2, service.getScreenedCount());
+        assertEquals(1, service.getRejectedCount());
+        assertEquals(1, service.getEscalatedCount());
+        assertEquals(1, service.getConfirmedCount());
+    }
+
+    //Tests that the default reject threshold passes every synthetic cat on to the detector, even on carpet
+    @Test
+    @DisplayName("Cascade 2")
+    public void defaultRejectThreshold_neverRejectsCat() {
+        CascadingImageService service = new CascadingImageService(screen, detector);
+        Random random = new Random(2);
+        for(CatScenes.Coat coat : CatScenes.Coat.values()) {
+            for(int i = 0; i < 10; i++) {
+                service.imageContainsCat(CatScenes.catInRoom(random, coat), 50f);
+                service.imageContainsCat(CatScenes.catOnCarpet(random, coat), 50f);
+                service.imageContainsCat(CatScenes.catOnGreyCarpet(random, coat), 50f);
+            }
+        }
+        assertEquals(0, service.getRejectedCount());
+        assertEquals(150, detectorCalls.get());
+
+        //about 60% of empty rooms have nothing furry in them at all
+        for(int i = 0; i < 50; i++) {
+            service.imageContainsCat(CatScenes.room(random), 50f);
+        }
+        assertTrue(service.getRejectedCount() >= 15, "empty rooms rejected: " + service.getRejectedCount());
+    }
+
+    //Tests that a screen confident enough to accept answers without the detector
+    @Test
+    @DisplayName("Cascade 3")
+    public void acceptThreshold_screenAnswersAlone() {
+        CascadingImageService service = new CascadingImageService(screen, (image, threshold) -> {
+            detectorCalls.incrementAndGet();
+            return false;
+        }, CascadingImageService.DEFAULT_REJECT_BELOW, 60f);
+        assertTrue(service.imageContainsCat(CatScenes.catInRoom(new Random(3), CatScenes.Coat.GREY), 50f));
+        assertEquals(0, detectorCalls.get());
+        assertEquals(1, service.getAcceptedCount());
+    }
+
+    //Tests that a blocking detector runs off the screen's pool, so other frames are still screened meanwhile
+    @Test
+    @DisplayName("Cascade 4")
+    public void blockingDetector_doesNotStallScreen() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<String> detectorThread = new AtomicReference<>();
+        CascadingImageService service = new CascadingImageService(screen, (image, threshold) -> {
+            detectorThread.set(Thread.currentThread().getName());
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        CompletableFuture<Boolean> cat = service.imageContainsCatAsync(CatScenes.catInRoom(new Random(4), CatScenes.Coat.BLACK), 50f);
+        CompletableFuture<Boolean> empty = service.imageContainsCatAsync(EMPTY_WALL, 50f);
+
+        assertFalse(empty.get(5, TimeUnit.SECONDS));
+        assertFalse(cat.isDone());
+        release.countDown();
+        assertTrue(cat.get(5, TimeUnit.SECONDS));
+        assertTrue(detectorThread.get().startsWith("cascade-detector-"), detectorThread.get());
+    }
+}
@@ -0,0 +1,176 @@
+package com.udacity.image.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Synthetic indoor camera frames with and without a cat, for calibrating the local detector.
+ *
+ * Every textured surface, cat or not, is a base colour with per-pixel brightness noise, so a sofa
+ * or carpet looks as furry to the detector as a cat does. Only the colour, size, shape and
+ * placement of the surfaces tell them apart. Walls and bare floors get the faint noise of a
+ * camera sensor.
+ */
+final class CatScenes {
+
+    static final int WIDTH = 320;
+    static final int HEIGHT = 240;
+
+    //brightness noise of a camera sensor on a flat surface, and of fur and upholstery
+    private static final int SENSOR_NOISE = 2;
+    private static final int FUR_NOISE = 14;
+    private static final int FABRIC_NOISE = 9;
+
+    enum Coat {
+        GINGER(205, 125, 60),
+        TABBY(140, 100, 70),
+        GREY(130, 130, 130),
+        BLACK(50, 50, 50),
+        WHITE(215, 212, 205);
+
+        private final Color color;
+
+        Coat(int r, int g, int b) {
+            this.color = new Color(r, g, b);
+        }
+    }
+
+    private CatScenes() {
+    }
+
+    /**
+     * A cat of the given coat lying or sitting somewhere on the floor of an empty room.
+     */
+    static BufferedImage catInRoom(Random random, Coat coat) {
+        return addCat(room(random), random, coat);
+    }
+
+    /**
+     * A cat of the given coat lying on the grey carpet of a room.
+     */
+    static BufferedImage catOnCarpet(Random random, Coat coat) {
+        return addCat(carpetedRoom(random), random, coat);
+    }
+
+    /**
+     * A cat of the given coat lying on a grey carpet that fills the frame.
+     */
+    static BufferedImage catOnGreyCarpet(Random random, Coat coat) {
+        return addCat(greyCarpet(random), random, coat);
+    }
+
+    private static BufferedImage addCat(BufferedImage image, Random random, Coat coat) {
+        double bodyWidth = WIDTH * (0.16 + random.nextDouble() * 0.24);
+        double bodyHeight = bodyWidth * (0.5 + random.nextDouble() * 0.35);
+        double x = WIDTH * 0.1 + random.nextDouble() * (WIDTH * 0.8 - bodyWidth);
+        double y = HEIGHT * 0.35 + random.nextDouble() * (HEIGHT * 0.6 - bodyHeight);
+        double head = bodyHeight * 0.7;
+        boolean facingLeft = random.nextBoolean();
+        Area cat = new Area(new Ellipse2D.Double(x, y, bodyWidth, bodyHeight));
+        cat.add(new Area(new Ellipse2D.Double(facingLeft ? x - head * 0.3 : x + bodyWidth - head * 0.7, y - head * 0.45, head, head)));
+        texture(image, cat, coat.color, FUR_NOISE, random);
+        return image;
+    }
+
+    /**
+     * An empty room: a plain wall above a plain floor.
+     */
+    static BufferedImage room(Random random) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int horizon = (int) (HEIGHT * (0.35 + random.nextDouble() * 0.2));
+        texture(image, new Rectangle2D.Double(0, 0, WIDTH, horizon), wallColour(random), SENSOR_NOISE, random);
+        texture(image, new Rectangle2D.Double(0, horizon, WIDTH, HEIGHT - horizon), floorColour(random), SENSOR_NOISE, random);
+        return image;
+    }
+
+    /**
+     * The camera looking straight down at a grey carpet that fills the frame.
+     */
+    static BufferedImage greyCarpet(Random random) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        texture(image, new Rectangle2D.Double(0, 0, WIDTH, HEIGHT), grey(random, 90, 170), FABRIC_NOISE, random);
+        return image;
+    }
+
+    /**
+     * A room whose floor is covered with a grey carpet.
+     */
+    static BufferedImage carpetedRoom(Random random) {
+        BufferedImage image = room(random);
+        int top = (int) (HEIGHT * (0.4 + random.nextDouble() * 0.2));
+        texture(image, new Rectangle2D.Double(0, top, WIDTH, HEIGHT - top), grey(random, 90, 170), FABRIC_NOISE, random);
+        return image;
+    }
+
+    /**
+     * A brown sofa against the wall of a room, half the time standing on a grey carpet.
+     */
+    static BufferedImage brownSofa(Random random) {
+        BufferedImage image = random.nextBoolean() ? room(random) : carpetedRoom(random);
+        double width = WIDTH * (0.45 + random.nextDouble() * 0.45);
+        double height = HEIGHT * (0.3 + random.nextDouble() * 0.15);
+        double x = random.nextDouble() * (WIDTH - width);
+        double y = HEIGHT * 0.25 + random.nextDouble() * (HEIGHT * 0.7 - height);
+        Area sofa = new Area(new Rectangle2D.Double(x, y, width, height));
+        //armrests stand a little higher than the seat back
+        sofa.add(new Area(new Rectangle2D.Double(x, y - height * 0.1, width * 0.12, height * 0.6)));
+        sofa.add(new Area(new Rectangle2D.Double(x + width * 0.88, y - height * 0.1, width * 0.12, height * 0.6)));
+        Color brown = new Color(110 + random.nextInt(50), 70 + random.nextInt(25), 40 + random.nextInt(25));
+        texture(image, sofa, brown, FABRIC_NOISE, random);
+        return image;
+    }
+
+    /**
+     * A room at dusk: everything dark and grainy with sensor noise.
+     */
+    static BufferedImage dimRoom(Random random) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        texture(image, new Rectangle2D.Double(0, 0, WIDTH, HEIGHT), grey(random, 25, 45), 6, random);
+        return image;
+    }
+
+    /**
+     * Paints the shape in the colour, with every pixel made brighter or darker by up to the noise.
+     */
+    private static void texture(BufferedImage image, Shape shape, Color color, int noise, Random random) {
+        BufferedImage mask = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D g = mask.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fill(shape);
+        g.dispose();
+        for(int y = 0; y < HEIGHT; y++) {
+            for(int x = 0; x < WIDTH; x++) {
+                if((mask.getRGB(x, y) & 0xff) == 0) {
+                    continue;
+                }
+                int delta = random.nextInt(2 * noise + 1) - noise;
+                image.setRGB(x, y, clamp(color.getRed() + delta) << 16 | clamp(color.getGreen() + delta) << 8 | clamp(color.getBlue() + delta));
+            }
+        }
+    }
+
+    private static Color wallColour(Random random) {
+        Color[] walls = {new Color(235, 230, 215), new Color(200, 215, 230), new Color(225, 215, 170), new Color(180, 200, 175)};
+        return walls[random.nextInt(walls.length)];
+    }
+
+    private static Color floorColour(Random random) {
+        Color[] floors = {new Color(170, 130, 85), new Color(150, 150, 145), new Color(200, 175, 140), new Color(90, 70, 55)};
+        return floors[random.nextInt(floors.length)];
+    }
+
+    private static Color grey(Random random, int min, int max) {
+        int value = min + random.nextInt(max - min + 1);
+        return new Color(value, value, value);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,83 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.ImageService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the stage that skips frames showing nothing new.
+ */
+public class FrameDifferenceImageServiceTest {
+
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+    private final ImageService delegate = (image, threshold) -> delegateCalls.incrementAndGet() % 2 == 1;
+
+    //Tests that an unchanged frame is not forwarded and gets the previous verdict
+    @Test
+    @DisplayName("Frame 1")
+    public void unchangedFrame_skipped() {
+        FrameDifferenceImageService service = new FrameDifferenceImageService(delegate);
+        BufferedImage room = TestFrames.solid(320, 240, new Color(90, 90, 90));
+        assertTrue(service.imageContainsCat(room, 50f));
+        assertTrue(service.imageContainsCat(TestFrames.copy(room), 50f));
+        assertEquals(1, service.getForwardedCount());
+        assertEquals(1, service.getSkippedCount());
+        assertEquals(1, delegateCalls.get());
+    }
+
+    //Tests that a change below the ratio is skipped and one above it is forwarded
+    @Test
+    @DisplayName("Frame 2")
+    public void changedRatio_decidesForwarding() {
+        FrameDifferenceImageService service = new FrameDifferenceImageService(delegate);
+        BufferedImage room = TestFrames.solid(320, 240, new Color(90, 90, 90));
+        service.imageContainsCat(room, 50f);
+
+        //one 10x10 cell of the 32x24 grid is 0.13% of the frame
+        BufferedImage speck = TestFrames.copy(room);
+        TestFrames.fill(speck, 0, 0, 10, 10, Color.WHITE);
+        service.imageContainsCat(speck, 50f);
+        assertEquals(1, service.getForwardedCount());
+
+        //a 60x60 object covers 36 cells, 4.7% of the frame
+        BufferedImage object = TestFrames.copy(room);
+        TestFrames.fill(object, 100, 100, 60, 60, Color.WHITE);
+        assertFalse(service.imageContainsCat(object, 50f));
+        assertEquals(2, service.getForwardedCount());
+        assertEquals(1, service.getSkippedCount());
+    }
+
+    //Tests that a slow change is measured against the last classified frame and is eventually forwarded
+    @Test
+    @DisplayName("Frame 3")
+    public void slowChange_addsUpUntilForwarded() {
+        FrameDifferenceImageService service = new FrameDifferenceImageService(delegate);
+        service.imageContainsCat(TestFrames.solid(320, 240, new Color(90, 90, 90)), 50f);
+        //each step is below the 24 level pixel threshold, the fourth is above it in total
+        for(int step = 1; step <= 3; step++) {
+            int gray = 90 + step * 8;
+            service.imageContainsCat(TestFrames.solid(320, 240, new Color(gray, gray, gray)), 50f);
+        }
+        assertEquals(1, service.getForwardedCount());
+        service.imageContainsCat(TestFrames.solid(320, 240, new Color(122, 122, 122)), 50f);
+        assertEquals(2, service.getForwardedCount());
+    }
+
+    //Tests that a frame classified with another confidence threshold is always forwarded
+    @Test
+    @DisplayName("Frame 4")
+    public void thresholdChange_forwarded() {
+        FrameDifferenceImageService service = new FrameDifferenceImageService(delegate);
+        BufferedImage room = TestFrames.solid(320, 240, new Color(90, 90, 90));
+        service.imageContainsCat(room, 50f);
+        service.imageContainsCat(room, 80f);
+        assertEquals(2, service.getForwardedCount());
+        assertEquals(0, service.getSkippedCount());
+    }
+}
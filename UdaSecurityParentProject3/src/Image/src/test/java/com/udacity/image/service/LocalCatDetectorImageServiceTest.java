@@ -0,0 +1,98 @@
+package com.udacity.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Threshold checks for the local detector on synthetic frames with and without a cat.
+ */
+public class LocalCatDetectorImageServiceTest {
+
+    private static final float THRESHOLD = 50;
+
+    private final LocalCatDetectorImageService detector = new LocalCatDetectorImageService(2);
+
+    @AfterEach
+    void close() {
+        detector.close();
+    }
+
+    //Tests that a cat of every coat colour in an empty room scores above the threshold
+    @Test
+    @DisplayName("Detector 1")
+    public void catInRoom_everyCoat_detected() {
+        Random random = new Random(1);
+        for(CatScenes.Coat coat : CatScenes.Coat.values()) {
+            for(int i = 0; i < 20; i++) {
+                float confidence = detector.catConfidence(CatScenes.catInRoom(random, coat));
+                assertTrue(confidence >= THRESHOLD, coat + " cat scored " + confidence);
+            }
+        }
+    }
+
+    //Tests that empty, carpeted and dim rooms without a cat score below the threshold
+    @Test
+    @DisplayName("Detector 2")
+    public void roomsWithoutCat_notDetected() {
+        Random random = new Random(2);
+        List<Function<Random, BufferedImage>> scenes = List.of(CatScenes::room, CatScenes::greyCarpet,
+                CatScenes::carpetedRoom, CatScenes::dimRoom);
+        for(Function<Random, BufferedImage> scene : scenes) {
+            for(int i = 0; i < 20; i++) {
+                float confidence = detector.catConfidence(scene.apply(random));
+                assertTrue(confidence < THRESHOLD, "cat-free frame scored " + confidence);
+            }
+        }
+    }
+
+    //Tests that the false-positive rate stays near the documented 21% for sofas and 4% overall
+    @Test
+    @DisplayName("Detector 3")
+    public void falsePositiveRate_matchesDocumentedRate() {
+        Random random = new Random(3);
+        int sofaHits = 0;
+        for(int i = 0; i < 100; i++) {
+            if(detector.imageContainsCat(CatScenes.brownSofa(random), THRESHOLD)) {
+                sofaHits++;
+            }
+        }
+        int otherHits = 0;
+        for(int i = 0; i < 100; i++) {
+            for(BufferedImage frame : List.of(CatScenes.room(random), CatScenes.greyCarpet(random),
+                    CatScenes.carpetedRoom(random), CatScenes.dimRoom(random))) {
+                if(detector.imageContainsCat(frame, THRESHOLD)) {
+                    otherHits++;
+                }
+            }
+        }
+        assertTrue(sofaHits <= 30, "sofa false positives: " + sofaHits + "%");
+        assertTrue(sofaHits + otherHits <= 30, "false positives: " + (sofaHits + otherHits) + " of 500");
+    }
+
+    //Tests that a large frame read at reduced resolution in parallel strips scores like the small one
+    @Test
+    @DisplayName("Detector 4")
+    public void largeFrame_scoresLikeSmallFrame() throws Exception {
+        BufferedImage small = CatScenes.catInRoom(new Random(4), CatScenes.Coat.GINGER);
+        BufferedImage large = new BufferedImage(small.getWidth() * 4, small.getHeight() * 4, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = large.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.drawImage(small, 0, 0, large.getWidth(), large.getHeight(), null);
+        g.dispose();
+
+        float expected = detector.catConfidence(small);
+        assertEquals(expected, detector.catConfidence(large), 0.01f);
+        assertEquals(expected, detector.catConfidenceAsync(large).get(5, TimeUnit.SECONDS), 0.01f);
+    }
+}
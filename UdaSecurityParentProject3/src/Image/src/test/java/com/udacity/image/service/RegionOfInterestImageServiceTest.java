@@ -0,0 +1,142 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.ImageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for classifying only the moving parts of a frame.
+ */
+public class RegionOfInterestImageServiceTest {
+
+    private static final Color FLOOR = new Color(170, 170, 170);
+    //the fake delegate sees a cat wherever there is something this red
+    private static final Color CAT = new Color(230, 20, 20);
+
+    private final List<BufferedImage> sent = new CopyOnWriteArrayList<>();
+    private final ImageService delegate = (image, threshold) -> {
+        sent.add(image);
+        return containsRed(image);
+    };
+    private RegionOfInterestImageService service;
+
+    @AfterEach
+    void close() {
+        service.close();
+    }
+
+    //Tests that a whole 1920x1080 frame goes to a delegate without an input limit in one piece
+    @Test
+    @DisplayName("Region 1")
+    public void wholeFrame_noInputLimit_sentAsIs() {
+        service = new RegionOfInterestImageService(delegate);
+        BufferedImage frame = TestFrames.solid(1920, 1080, FLOOR);
+        assertFalse(service.imageContainsCat(frame, 50f));
+        assertEquals(List.of(frame), sent);
+        assertEquals(1, service.getTileCount());
+    }
+
+    //Tests that a frame larger than the delegate accepts is cut into as few tiles as fit
+    @Test
+    @DisplayName("Region 2")
+    public void wholeFrame_inputLimit_fewestTiles() {
+        service = new RegionOfInterestImageService(delegate, 32, 24, 24, 4, 0.5f, 640, 1024, 4);
+        BufferedImage frame = TestFrames.solid(1920, 1080, FLOOR);
+        TestFrames.fill(frame, 1800, 1000, 60, 60, CAT);
+        assertTrue(service.imageContainsCat(frame, 50f));
+        assertEquals(4, sent.size());
+        for(BufferedImage tile : sent) {
+            assertTrue(tile.getWidth() <= 1024 && tile.getHeight() <= 1024, tile.getWidth() + "x" + tile.getHeight());
+        }
+    }
+
+    //Tests that only the moving part of a large frame is sent, scaled to the crop size
+    @Test
+    @DisplayName("Region 3")
+    public void motion_onlyRegionSent() {
+        service = new RegionOfInterestImageService(delegate);
+        BufferedImage room = TestFrames.solid(1920, 1080, FLOOR);
+        service.imageContainsCat(room, 50f);
+        BufferedImage withCat = TestFrames.copy(room);
+        TestFrames.fill(withCat, 600, 400, 200, 150, CAT);
+
+        assertTrue(service.imageContainsCat(withCat, 50f));
+        BufferedImage crop = sent.get(1);
+        assertTrue(crop.getWidth() <= 640 && crop.getHeight() <= 640);
+        assertEquals(1, service.getRegionCount());
+        assertTrue(service.getPayloadRatio() < 0.6, "payload ratio " + service.getPayloadRatio());
+    }
+
+    //Tests that a cat lying still stays detected while something else moves, and is lost once it leaves
+    @Test
+    @DisplayName("Region 4")
+    public void stationaryCat_keptWhileMotionElsewhere() {
+        service = new RegionOfInterestImageService(delegate);
+        BufferedImage room = TestFrames.solid(1920, 1080, FLOOR);
+        service.imageContainsCat(room, 50f);
+        BufferedImage withCat = TestFrames.copy(room);
+        TestFrames.fill(withCat, 200, 600, 200, 150, CAT);
+        assertTrue(service.imageContainsCat(withCat, 50f));
+
+        //a curtain moves on the far side of the room; only it is classified, and it is no cat
+        BufferedImage curtain = TestFrames.copy(withCat);
+        TestFrames.fill(curtain, 1500, 100, 200, 300, Color.WHITE);
+        assertTrue(service.imageContainsCat(curtain, 50f));
+        assertFalse(containsRed(sent.get(sent.size() - 1)));
+
+        //the cat walks off; where it lay is classified again and is empty
+        BufferedImage gone = TestFrames.copy(curtain);
+        TestFrames.fill(gone, 200, 600, 200, 150, FLOOR);
+        assertFalse(service.imageContainsCat(gone, 50f));
+    }
+
+    //Tests that a cat found in a whole frame, so at no known place, is looked for again in the whole frame
+    @Test
+    @DisplayName("Region 5")
+    public void catInWholeFrame_motionElsewhere_wholeFrameClassifiedAgain() {
+        service = new RegionOfInterestImageService(delegate);
+        BufferedImage withCat = TestFrames.solid(1920, 1080, FLOOR);
+        TestFrames.fill(withCat, 200, 600, 200, 150, CAT);
+        assertTrue(service.imageContainsCat(withCat, 50f));
+
+        BufferedImage curtain = TestFrames.copy(withCat);
+        TestFrames.fill(curtain, 1500, 100, 200, 300, Color.WHITE);
+        assertTrue(service.imageContainsCat(curtain, 50f));
+        assertTrue(containsRed(sent.get(sent.size() - 1)));
+    }
+
+    //Tests that a cat that moves is looked for in both where it was and where it went
+    @Test
+    @DisplayName("Region 6")
+    public void movingCat_followed() {
+        service = new RegionOfInterestImageService(delegate);
+        BufferedImage before = TestFrames.solid(1920, 1080, FLOOR);
+        TestFrames.fill(before, 200, 600, 200, 150, CAT);
+        service.imageContainsCat(before, 50f);
+
+        BufferedImage after = TestFrames.solid(1920, 1080, FLOOR);
+        TestFrames.fill(after, 300, 620, 200, 150, CAT);
+        assertTrue(service.imageContainsCat(after, 50f));
+        assertEquals(1, service.getRegionCount());
+    }
+
+    private static boolean containsRed(BufferedImage image) {
+        for(int y = 0; y < image.getHeight(); y += 2) {
+            for(int x = 0; x < image.getWidth(); x += 2) {
+                int rgb = image.getRGB(x, y);
+                if(((rgb >> 16) & 0xff) > 200 && ((rgb >> 8) & 0xff) < 60 && (rgb & 0xff) < 60) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,223 @@
+package com.udacity.image.service;
+
+import com.udacity.image.interfaces.AsyncImageService;
+import com.udacity.image.interfaces.ImageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the rate limit, timeouts, concurrency limit and circuit breaker guarding a remote detector.
+ */
+public class ResilientImageServiceTest {
+
+    private static final BufferedImage FRAME = TestFrames.solid(10, 10, Color.GRAY);
+    private static final Duration LONG = Duration.ofMinutes(1);
+
+    //the delegate finds a cat in every frame and the fallback in none, so verdicts show who answered
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+    private final ImageService delegate = (image, threshold) -> {
+        delegateCalls.incrementAndGet();
+        return true;
+    };
+    private final NoCatImageService fallback = new NoCatImageService();
+    private ResilientImageService service;
+
+    @AfterEach
+    void close() {
+        service.close();
+    }
+
+    //Tests that the token bucket allows a burst, sends the excess to the fallback and refills over time
+    @Test
+    @DisplayName("Resilient 1")
+    public void tokenBucket_limitsRequestsAndRefills() throws InterruptedException {
+        service = new ResilientImageService(delegate, fallback, 20, 2, LONG, 8, LONG, 10, 0.5f, LONG);
+        assertTrue(service.imageContainsCat(FRAME, 50f));
+        assertTrue(service.imageContainsCat(FRAME, 50f));
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertEquals(1, service.getRateLimitedCount());
+
+        //20 permits a second is one every 50 ms
+        Thread.sleep(120);
+        assertTrue(service.imageContainsCat(FRAME, 50f));
+        assertEquals(3, delegateCalls.get());
+        assertEquals(1, service.getFallbackCount());
+    }
+
+    //Tests that a delegate slower than the timeout is answered by the fallback without waiting for it
+    @Test
+    @DisplayName("Resilient 2")
+    public void slowDelegate_timesOutToFallback() {
+        CountDownLatch release = new CountDownLatch(1);
+        service = new ResilientImageService((image, threshold) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }, fallback, 100, 10, Duration.ofMillis(50), 8, LONG, 10, 0.5f, LONG);
+        long start = System.nanoTime();
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, service.getTimeoutCount());
+        assertEquals(1, fallback.getFrameCount());
+        release.countDown();
+    }
+
+    //Tests that old outcomes leave the circuit breaker's window, so only the latest calls can open it
+    @Test
+    @DisplayName("Resilient 3")
+    public void failureWindow_rollsOver() {
+        Deque<Boolean> failures = new ArrayDeque<>(List.of(true, false, false, false, false, true, true));
+        service = new ResilientImageService((image, threshold) -> {
+            if(failures.poll()) {
+                throw new IllegalStateException("service unavailable");
+            }
+            return true;
+        }, fallback, 100, 10, LONG, 8, LONG, 4, 0.5f, LONG);
+
+        //the first failure has left the window of four by the time the second arrives
+        for(int i = 0; i < 6; i++) {
+            service.imageContainsCat(FRAME, 50f);
+            assertEquals(ResilientImageService.CircuitState.CLOSED, service.getCircuitState(), "call " + i);
+        }
+        service.imageContainsCat(FRAME, 50f);
+        assertEquals(ResilientImageService.CircuitState.OPEN, service.getCircuitState());
+        assertEquals(3, service.getErrorCount());
+
+        //while open the delegate is not asked at all
+        service.imageContainsCat(FRAME, 50f);
+        assertEquals(7, service.getDelegateCount());
+    }
+
+    //Tests that after the open duration a single trial is let through, and its outcome closes or reopens the circuit
+    @Test
+    @DisplayName("Resilient 4")
+    public void halfOpen_singleTrialDecides() throws Exception {
+        AtomicInteger failuresLeft = new AtomicInteger(2);
+        CountDownLatch trialStarted = new CountDownLatch(1);
+        CountDownLatch releaseTrial = new CountDownLatch(1);
+        service = new ResilientImageService((image, threshold) -> {
+            if(failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("service unavailable");
+            }
+            trialStarted.countDown();
+            try {
+                releaseTrial.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }, fallback, 100, 10, LONG, 8, LONG, 1, 1f, Duration.ofMillis(100));
+
+        service.imageContainsCat(FRAME, 50f);
+        assertEquals(ResilientImageService.CircuitState.OPEN, service.getCircuitState());
+
+        //a failed trial opens the circuit again
+        Thread.sleep(150);
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertEquals(ResilientImageService.CircuitState.OPEN, service.getCircuitState());
+        assertEquals(2, service.getOpenCount());
+
+        //while the next trial is running, other frames go to the fallback
+        Thread.sleep(150);
+        CompletableFuture<Boolean> trial = service.imageContainsCatAsync(FRAME, 50f);
+        assertTrue(trialStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(ResilientImageService.CircuitState.HALF_OPEN, service.getCircuitState());
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertEquals(3, service.getDelegateCount());
+
+        releaseTrial.countDown();
+        assertTrue(trial.get(5, TimeUnit.SECONDS));
+        assertEquals(ResilientImageService.CircuitState.CLOSED, service.getCircuitState());
+    }
+
+    //Tests that an asynchronous delegate is limited too, and a timed-out request holds its slot until it answers
+    @Test
+    @DisplayName("Resilient 5")
+    public void asyncDelegate_concurrencyLimitedUntilAnswered() {
+        List<CompletableFuture<Boolean>> requests = new CopyOnWriteArrayList<>();
+        service = new ResilientImageService(new AsyncImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                return imageContainsCatAsync(image, confidenceThreshhold).join();
+            }
+
+            @Override
+            public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+                CompletableFuture<Boolean> request = new CompletableFuture<>();
+                requests.add(request);
+                return request;
+            }
+        }, fallback, 100, 10, Duration.ofMillis(50), 1, LONG, 10, 0.5f, LONG);
+
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertEquals(1, service.getTimeoutCount());
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertEquals(1, requests.size());
+        assertEquals(1, service.getRateLimitedCount());
+
+        requests.get(0).complete(true);
+        CompletableFuture<Boolean> next = service.imageContainsCatAsync(FRAME, 50f);
+        assertEquals(2, requests.size());
+        requests.get(1).complete(true);
+        assertTrue(next.join());
+    }
+
+    //Tests that the time spent creating a lazy delegate does not count against the request's timeout
+    @Test
+    @DisplayName("Resilient 6")
+    public void lazyDelegate_creationNotTimed() {
+        service = new ResilientImageService(new LazyImageService(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return delegate;
+        }), fallback, 100, 10, Duration.ofMillis(50), 8, Duration.ofSeconds(1), 10, 0.5f, LONG);
+        assertTrue(service.imageContainsCat(FRAME, 50f));
+        assertEquals(0, service.getTimeoutCount());
+        assertEquals(0, fallback.getFrameCount());
+    }
+
+    //Tests that a lazy delegate that could not be created counts as a failure and is created on a later frame
+    @Test
+    @DisplayName("Resilient 7")
+    public void lazyDelegate_creationFails_retriedLater() {
+        AtomicInteger attempts = new AtomicInteger();
+        LazyImageService lazy = new LazyImageService(() -> {
+            if(attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("not configured");
+            }
+            return delegate;
+        });
+        service = new ResilientImageService(lazy, fallback, 100, 10, LONG, 8, LONG, 10, 0.5f, LONG);
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertEquals(1, service.getErrorCount());
+        assertEquals(0, service.getDelegateCount());
+        assertFalse(lazy.isCreated());
+
+        //the failed creation has already completed, whichever thread ran it, so the next frame starts another
+        assertTrue(service.imageContainsCat(FRAME, 50f));
+        assertTrue(lazy.isCreated());
+        assertEquals(2, attempts.get());
+        assertEquals(1, service.getDelegateCount());
+    }
+}
@@ -0,0 +1,51 @@
+package com.udacity.image.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Synthetic camera frames for the image service tests.
+ */
+final class TestFrames {
+
+    private TestFrames() {
+    }
+
+    /**
+     * Frame made of a grid of flat gray cells.
+     * @param gray Brightness (0-255) of the cell at (col, row)
+     */
+    static BufferedImage grid(int cols, int rows, int cellSize, IntBinaryOperator gray) {
+        BufferedImage image = new BufferedImage(cols * cellSize, rows * cellSize, BufferedImage.TYPE_INT_RGB);
+        for(int row = 0; row < rows; row++) {
+            for(int col = 0; col < cols; col++) {
+                int value = Math.max(0, Math.min(255, gray.applyAsInt(col, row)));
+                fill(image, col * cellSize, row * cellSize, cellSize, cellSize, new Color(value, value, value));
+            }
+        }
+        return image;
+    }
+
+    static BufferedImage solid(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        fill(image, 0, 0, width, height, color);
+        return image;
+    }
+
+    static void fill(BufferedImage image, int x, int y, int width, int height, Color color) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(x, y, width, height);
+        g.dispose();
+    }
+
+    static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+}
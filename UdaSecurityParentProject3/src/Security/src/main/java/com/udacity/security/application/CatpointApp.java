@@ -1,11 +1,20 @@
 package com.udacity.security.application;
 
+import javax.swing.*;
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
- * This is the main class that launches the application.
+ * This is the main class that launches the application. Pass --headless to run without the
+ * user interface, see HeadlessCatpointApp.
  */
 public class CatpointApp {
-    public static void main(String[] args) {
-        CatpointGui gui = new CatpointGui();
-        gui.setVisible(true);
+    public static void main(String[] args) throws IOException {
+        if(Arrays.asList(args).contains("--headless")) {
+            HeadlessCatpointApp.main(args);
+            return;
+        }
+        long launchNanos = System.nanoTime();
+        SwingUtilities.invokeLater(() -> new CatpointGui(launchNanos).setVisible(true));
     }
 }
@@ -1,35 +1,112 @@
 package com.udacity.security.application;
 
 import com.udacity.image.interfaces.ImageService;
-import com.udacity.image.service.AwsImageService;
 import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
 import com.udacity.security.data.SecurityRepository;
 import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
  *
  * We're not using any dependency injection framework, so this class also handles constructing
  * all our dependencies and providing them to other classes as necessary.
+ *
+ * The frame appears straight away with a loading message. The repository and the image service
+ * are built at the same time on background threads, and the panels replace the message once
+ * both are ready. The Rekognition client is only created when the first image is scanned. The
+ * time from launch to the first frame on screen, and to the panels, is logged.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private ImageService imageService = new AwsImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
-    private DisplayPanel displayPanel = new DisplayPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ControlPanel controlPanel = new ControlPanel(securityService, sensorPanel);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private static final Logger log = LoggerFactory.getLogger(CatpointGui.class);
+
+    private final long launchNanos;
+    private final JLabel loadingLabel = new JLabel("Loading...");
 
     public CatpointGui() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * @param launchNanos System.nanoTime() when the application started, for the startup times logged
+     */
+    public CatpointGui(long launchNanos) {
+        this.launchNanos = launchNanos;
         setLocation(100, 100);
         setSize(600, 850);
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
+        loadingLabel.setFont(StyleService.HEADING_FONT);
+        JPanel loadingPanel = new JPanel(new MigLayout());
+        loadingPanel.add(loadingLabel);
+        getContentPane().add(loadingPanel);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                log.info("First frame shown {} ms after launch", millisSinceLaunch());
+            }
+        });
+
+        loadDependencies();
+    }
+
+    /**
+     * Builds the repository and the image service concurrently, then the panels on the event
+     * dispatch thread.
+     */
+    private void loadDependencies() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService startup = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "startup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<SecurityRepository> repository =
+                CompletableFuture.supplyAsync(PretendDatabaseSecurityRepositoryImpl::new, startup);
+        CompletableFuture<ImageService> imageService = CompletableFuture.supplyAsync(ImageServices::create, startup);
+        repository.thenCombine(imageService, SecurityService::new)
+                .whenComplete((service, error) -> startup.shutdown())
+                .whenCompleteAsync((service, error) -> {
+                    if(error != null) {
+                        reportStartupFailure(error);
+                        return;
+                    }
+                    try {
+                        showPanels(service);
+                    } catch (RuntimeException e) {
+                        reportStartupFailure(e);
+                    }
+                }, SwingUtilities::invokeLater);
+    }
+
+    private void showPanels(SecurityService securityService) {
+        DisplayPanel displayPanel = new DisplayPanel(securityService);
+        SensorPanel sensorPanel = new SensorPanel(securityService,
+                Integer.getInteger("catpoint.sensorLimit", SensorPanel.DEFAULT_SENSOR_LIMIT));
+        ControlPanel controlPanel = new ControlPanel(securityService, sensorPanel);
+        ImagePanel imagePanel = new ImagePanel(securityService);
+        SwingStatusAdapter statusAdapter = new SwingStatusAdapter();
+
+        //panels hear about status changes through the adapter, once per frame and on the event dispatch thread
+        statusAdapter.addListener(displayPanel);
+        statusAdapter.addListener(imagePanel);
+        statusAdapter.addListener(sensorPanel);
+        securityService.addStatusListener(statusAdapter);
+
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
         mainPanel.add(displayPanel, "wrap");
@@ -37,7 +114,25 @@ public class CatpointGui extends JFrame {
         mainPanel.add(controlPanel, "wrap");
         mainPanel.add(sensorPanel);
 
+        getContentPane().removeAll();
         getContentPane().add(mainPanel);
+        revalidate();
+        repaint();
+        log.info("Security system ready {} ms after launch", millisSinceLaunch());
+    }
+
+    private void reportStartupFailure(Throwable error) {
+        log.error("Unable to start the security system", error);
+        getContentPane().removeAll();
+        JPanel loadingPanel = new JPanel(new MigLayout());
+        loadingPanel.add(loadingLabel);
+        getContentPane().add(loadingPanel);
+        loadingLabel.setText("Unable to start the security system");
+        revalidate();
+        repaint();
+    }
 
+    private long millisSinceLaunch() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launchNanos);
     }
 }
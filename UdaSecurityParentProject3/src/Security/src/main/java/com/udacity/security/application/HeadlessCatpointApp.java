@@ -0,0 +1,36 @@
+package com.udacity.security.application;
+
+import com.udacity.image.interfaces.ImageService;
+import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.security.data.SecurityRepository;
+import com.udacity.security.http.SecurityHttpApi;
+import com.udacity.security.service.ConcurrentSecurityService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Runs the security system without a user interface, for gateways with no display. Wires the
+ * same dependencies as CatpointGui, but never loads Swing or MigLayout, and serves the
+ * SecurityService over HTTP instead.
+ *
+ * Listens on 127.0.0.1:8080 unless the catpoint.httpHost or catpoint.httpPort system properties
+ * say otherwise. See ImageServices for what answers when Rekognition cannot.
+ */
+public class HeadlessCatpointApp {
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
+        ImageService imageService = ImageServices.create();
+        //requests are handled on several threads at once
+        ConcurrentSecurityService securityService = new ConcurrentSecurityService(securityRepository, imageService);
+
+        InetSocketAddress address = new InetSocketAddress(System.getProperty("catpoint.httpHost", "127.0.0.1"),
+                Integer.getInteger("catpoint.httpPort", 8080));
+        SecurityHttpApi api = new SecurityHttpApi(securityService, address);
+        Runtime.getRuntime().addShutdownHook(new Thread(api::close, "http-api-shutdown"));
+        api.start();
+    }
+}
@@ -11,6 +11,7 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
@@ -29,7 +30,6 @@ public class ImagePanel extends JPanel implements StatusListener {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
@@ -59,10 +59,24 @@ public class ImagePanel extends JPanel implements StatusListener {
             repaint();
         });
 
-        //button that sends the image to the image service
+        //button that sends the image to the image service without freezing the window while it is analyzed
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            scanPictureButton.setEnabled(false);
+            cameraHeader.setText("Camera Feed - Scanning...");
+            CompletableFuture<Boolean> scan;
+            try {
+                scan = securityService.processImageAsync(currentCameraImage, SwingUtilities::invokeLater);
+            } catch (RuntimeException ex) {
+                scan = CompletableFuture.failedFuture(ex);
+            }
+            scan.whenComplete((cat, error) -> SwingUtilities.invokeLater(() -> {
+                scanPictureButton.setEnabled(true);
+                if(error != null) {
+                    cameraHeader.setText("Camera Feed");
+                    JOptionPane.showMessageDialog(null, "Unable to scan picture.");
+                }
+            }));
         });
 
         add(cameraHeader, "span 3, wrap");
@@ -0,0 +1,39 @@
+package com.udacity.security.application;
+
+import com.udacity.image.interfaces.ImageService;
+import com.udacity.image.service.AwsImageService;
+import com.udacity.image.service.LazyImageService;
+import com.udacity.image.service.LocalCatDetectorImageService;
+import com.udacity.image.service.NoCatImageService;
+import com.udacity.image.service.ResilientImageService;
+
+/**
+ * Builds the image service shared by CatpointGui and HeadlessCatpointApp: Rekognition, created on
+ * first use, behind a rate limit, timeouts and a circuit breaker. If config.properties is missing
+ * or incomplete, creating the client fails and is tried again on a later frame, so fixing the
+ * file takes effect without a restart.
+ *
+ * When Rekognition cannot answer, the frame is reported as showing no cat and a warning is
+ * logged. Setting -Dcatpoint.localFallback=true lets the local detector guess instead, which
+ * keeps the alarm working offline but misses cats and raises false alarms far more often.
+ */
+final class ImageServices {
+
+    private ImageServices() {
+    }
+
+    static ImageService create() {
+        ImageService fallback = Boolean.getBoolean("catpoint.localFallback")
+                ? new LocalCatDetectorImageService()
+                : new NoCatImageService();
+        return new ResilientImageService(new LazyImageService(ImageServices::rekognition), fallback);
+    }
+
+    private static ImageService rekognition() {
+        AwsImageService service = new AwsImageService();
+        if(!service.isConfigured()) {
+            throw new IllegalStateException("AWS Rekognition is not configured, see config.properties");
+        }
+        return service;
+    }
+}
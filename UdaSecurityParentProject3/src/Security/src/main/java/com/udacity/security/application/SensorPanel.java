@@ -8,14 +8,26 @@ import com.udacity.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumn;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
  * manually set to "active" and "inactive" to test the system.
+ *
+ * Sensors are listed in a table, which only paints the rows that are scrolled into view and
+ * repaints just the row of a sensor that changed, so the panel stays responsive with thousands
+ * of sensors.
  */
 public class SensorPanel extends JPanel implements StatusListener{
 
+    public static final int DEFAULT_SENSOR_LIMIT = 4;
+
     private SecurityService securityService;
+    private final int sensorLimit;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
     private JLabel newSensorName = new JLabel("Name:");
@@ -24,14 +36,23 @@ public class SensorPanel extends JPanel implements StatusListener{
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
-    private JPanel sensorListPanel;
+    private SensorTableModel sensorTableModel = new SensorTableModel();
+    private JTable sensorTable;
     private JPanel newSensorPanel;
 
     public SensorPanel(SecurityService securityService) {
+        this(securityService, DEFAULT_SENSOR_LIMIT);
+    }
+
+    /**
+     * @param securityService
+     * @param sensorLimit Maximum number of sensors users may add
+     */
+    public SensorPanel(SecurityService securityService, int sensorLimit) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
+        this.sensorLimit = sensorLimit;
 
         panelLabel.setFont(StyleService.HEADING_FONT);
         addNewSensorButton.addActionListener(e ->
@@ -39,14 +60,13 @@ public class SensorPanel extends JPanel implements StatusListener{
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
+        sensorTable = buildSensorTable();
 
-        updateSensorList(sensorListPanel);
+        updateSensorList();
 
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        add(new JScrollPane(sensorTable), "span, width 540:540:540, height 150:200:400");
     }
 
     /**
@@ -64,60 +84,82 @@ public class SensorPanel extends JPanel implements StatusListener{
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Builds the table listing the sensors. The last two columns are drawn as buttons; clicks on
+     * them are picked up by a single mouse listener rather than a button per row.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
+    private JTable buildSensorTable() {
+        JTable table = new JTable(sensorTableModel);
+        table.setFillsViewportHeight(true);
+        table.setRowSelectionAllowed(false);
+        table.getTableHeader().setReorderingAllowed(false);
+        table.setRowHeight(new JButton("Deactivate").getPreferredSize().height);
+
+        ButtonCellRenderer buttonRenderer = new ButtonCellRenderer();
+        for(int column : new int[]{SensorTableModel.TOGGLE_COLUMN, SensorTableModel.REMOVE_COLUMN}) {
+            TableColumn tableColumn = table.getColumnModel().getColumn(column);
+            tableColumn.setCellRenderer(buttonRenderer);
+            tableColumn.setPreferredWidth(120);
+        }
+        table.getColumnModel().getColumn(SensorTableModel.NAME_COLUMN).setPreferredWidth(160);
+
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                int column = table.columnAtPoint(e.getPoint());
+                if(row < 0) {
+                    return;
+                }
+                Sensor sensor = sensorTableModel.getSensorAt(row);
+                if(column == SensorTableModel.TOGGLE_COLUMN) {
+                    setSensorActivity(sensor, !sensor.getActive());
+                } else if(column == SensorTableModel.REMOVE_COLUMN) {
+                    removeSensor(sensor);
+                }
+            }
         });
+        return table;
+    }
 
-        repaint();
-        revalidate();
+    /**
+     * Requests the current list of sensors and shows them in the table, sorted in their natural
+     * order. Sensors the table already shows are only repainted.
+     */
+    private void updateSensorList() {
+        sensorTableModel.setSensors(securityService.getSensors());
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Asks the securityService to change a sensor activation status and then refreshes that sensor's row
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
         securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+        sensorTableModel.sensorChanged(sensor);
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService and then inserts it into the sensor list
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
+        //the table holds every sensor, so its row count avoids copying the sensor set
+        if(sensorTableModel.getRowCount() < sensorLimit) {
             securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
+            sensorTableModel.addSensor(sensor);
         } else {
-            JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
+            JOptionPane.showMessageDialog(null, String.format("To add more than %d sensors, please subscribe to our Premium Membership!", sensorLimit));
         }
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
+     * Remove a sensor from the securityService and then from the sensor list
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
         securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+        sensorTableModel.removeSensor(sensor);
     }
 
     @Override
@@ -132,6 +174,20 @@ public class SensorPanel extends JPanel implements StatusListener{
 
     @Override
     public void sensorStatusChanged() {
-        updateSensorList(sensorListPanel);
+        updateSensorList();
+    }
+
+    /**
+     * Draws a table cell as a button labelled with the cell's value. One button is shared by
+     * every cell, as with any table renderer.
+     */
+    private static class ButtonCellRenderer implements TableCellRenderer {
+        private final JButton button = new JButton();
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            button.setText(String.valueOf(value));
+            return button;
+        }
     }
 }
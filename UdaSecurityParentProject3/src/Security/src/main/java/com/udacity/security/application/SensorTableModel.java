@@ -0,0 +1,108 @@
+package com.udacity.security.application;
+
+import com.udacity.security.data.Sensor;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table model holding the sensors in their natural order. Sensors are sorted once when the model
+ * is filled and inserted at their sorted position afterwards, and every change fires an event for
+ * just the affected row, so the table only repaints what actually changed.
+ */
+class SensorTableModel extends AbstractTableModel {
+
+    static final int NAME_COLUMN = 0;
+    static final int TYPE_COLUMN = 1;
+    static final int STATUS_COLUMN = 2;
+    static final int TOGGLE_COLUMN = 3;
+    static final int REMOVE_COLUMN = 4;
+
+    private static final String[] COLUMN_NAMES = {"Name", "Type", "Status", "", ""};
+
+    private final List<Sensor> sensors = new ArrayList<>();
+
+    /**
+     * Replaces the contents of the model. If it already holds exactly these sensors, only their
+     * rows are marked as changed.
+     */
+    void setSensors(Collection<Sensor> newSensors) {
+        if(newSensors.size() == sensors.size() && newSensors.stream().allMatch(s -> indexOf(s) >= 0)) {
+            if(!sensors.isEmpty()) {
+                fireTableRowsUpdated(0, sensors.size() - 1);
+            }
+            return;
+        }
+        sensors.clear();
+        sensors.addAll(newSensors);
+        Collections.sort(sensors);
+        fireTableDataChanged();
+    }
+
+    void addSensor(Sensor sensor) {
+        int index = indexOf(sensor);
+        if(index >= 0) {
+            sensors.set(index, sensor);
+            fireTableRowsUpdated(index, index);
+            return;
+        }
+        int insertAt = -index - 1;
+        sensors.add(insertAt, sensor);
+        fireTableRowsInserted(insertAt, insertAt);
+    }
+
+    void removeSensor(Sensor sensor) {
+        int index = indexOf(sensor);
+        if(index >= 0) {
+            sensors.remove(index);
+            fireTableRowsDeleted(index, index);
+        }
+    }
+
+    void sensorChanged(Sensor sensor) {
+        int index = indexOf(sensor);
+        if(index >= 0) {
+            fireTableRowsUpdated(index, index);
+        }
+    }
+
+    Sensor getSensorAt(int row) {
+        return sensors.get(row);
+    }
+
+    //binary search over the natural order, which does not depend on the sensor's active flag
+    private int indexOf(Sensor sensor) {
+        return Collections.binarySearch(sensors, sensor);
+    }
+
+    @Override
+    public int getRowCount() {
+        return sensors.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Sensor sensor = sensors.get(row);
+        return switch(column) {
+            case NAME_COLUMN -> sensor.getName();
+            case TYPE_COLUMN -> sensor.getSensorType().toString();
+            case STATUS_COLUMN -> sensor.getActive() ? "Active" : "Inactive";
+            case TOGGLE_COLUMN -> sensor.getActive() ? "Deactivate" : "Activate";
+            case REMOVE_COLUMN -> "Remove Sensor";
+            default -> null;
+        };
+    }
+}
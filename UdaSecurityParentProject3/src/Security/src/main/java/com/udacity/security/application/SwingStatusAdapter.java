@@ -0,0 +1,156 @@
+package com.udacity.security.application;
+
+import com.udacity.security.data.AlarmStatus;
+
+import javax.swing.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sits between the SecurityService and the Swing panels. Status events may arrive on any thread
+ * and at any rate; they are folded into the latest alarm status, the latest cat verdict and
+ * whether any sensor changed, and handed to the panels on the event dispatch thread at most once
+ * per frame interval. A burst of thousands of sensor events therefore costs the panels one update
+ * per frame instead of one per event.
+ *
+ * Panels registered here only ever see the latest state. Events of different kinds that arrive
+ * within the same frame are delivered alarm status first, then cat verdict, then sensor change.
+ */
+public class SwingStatusAdapter implements StatusListener {
+
+    public static final Duration DEFAULT_FRAME_INTERVAL = Duration.ofMillis(16);
+
+    private final List<StatusListener> panels = new CopyOnWriteArrayList<>();
+    private final long frameIntervalNanos;
+
+    //latest state not yet delivered, guarded by this
+    private AlarmStatus pendingAlarmStatus;
+    private Boolean pendingCatDetected;
+    private boolean pendingSensorChange;
+
+    //true from the first undelivered event until the flush that delivers it starts
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    //touched only on the event dispatch thread
+    private final Timer flushTimer;
+    private long lastFlushNanos;
+
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+
+    public SwingStatusAdapter() {
+        this(DEFAULT_FRAME_INTERVAL);
+    }
+
+    /**
+     * @param frameInterval Shortest time between two updates of the panels
+     */
+    public SwingStatusAdapter(Duration frameInterval) {
+        this.frameIntervalNanos = frameInterval.toNanos();
+        this.flushTimer = new Timer(0, e -> flush());
+        flushTimer.setRepeats(false);
+        lastFlushNanos = System.nanoTime() - frameIntervalNanos;
+    }
+
+    /**
+     * Registers a panel to receive coalesced updates on the event dispatch thread.
+     */
+    public void addListener(StatusListener panel) {
+        panels.add(panel);
+    }
+
+    public void removeListener(StatusListener panel) {
+        panels.remove(panel);
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        synchronized(this) {
+            pendingAlarmStatus = status;
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        synchronized(this) {
+            pendingCatDetected = catDetected;
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        synchronized(this) {
+            pendingSensorChange = true;
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Number of status events received.
+     */
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    /**
+     * Number of times the panels were updated.
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    private void scheduleFlush() {
+        eventCount.incrementAndGet();
+        if(flushScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::startFlushTimer);
+        }
+    }
+
+    //runs on the event dispatch thread: flushes right away if a frame has passed, otherwise at the next frame
+    private void startFlushTimer() {
+        long wait = lastFlushNanos + frameIntervalNanos - System.nanoTime();
+        if(wait <= 0) {
+            flush();
+        } else {
+            flushTimer.setInitialDelay((int) Math.max(1, wait / 1_000_000));
+            flushTimer.restart();
+        }
+    }
+
+    private void flush() {
+        //clear the flag first, so an event arriving while panels update schedules the next frame
+        flushScheduled.set(false);
+        AlarmStatus alarmStatus;
+        Boolean catDetected;
+        boolean sensorChange;
+        synchronized(this) {
+            alarmStatus = pendingAlarmStatus;
+            catDetected = pendingCatDetected;
+            sensorChange = pendingSensorChange;
+            pendingAlarmStatus = null;
+            pendingCatDetected = null;
+            pendingSensorChange = false;
+        }
+        lastFlushNanos = System.nanoTime();
+        if(alarmStatus == null && catDetected == null && !sensorChange) {
+            return;
+        }
+        flushCount.incrementAndGet();
+        for(StatusListener panel : panels) {
+            if(alarmStatus != null) {
+                panel.notify(alarmStatus);
+            }
+            if(catDetected != null) {
+                panel.catDetected(catDetected);
+            }
+            if(sensorChange) {
+                panel.sensorStatusChanged();
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.udacity.security.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Repository that appends every change to a binary journal file instead of rewriting the whole
+ * system state, so persisting a single sensor event costs the same no matter how many sensors
+ * exist. Every few thousand sensor records the current sensor set is written to a compact
+ * snapshot and the journal is rewritten without the sensor records it covers. The rewritten journal
+ * keeps only the latest arming record and the alarm records within the alarm history limit, so the
+ * journal, the time to replay it and the cost of compacting it stay bounded however long the
+ * system runs.
+ *
+ * On startup the snapshot is loaded and the journal tail is replayed on top of it. A record that
+ * was only partially written when the process died is detected by its checksum and discarded.
+ */
+public class JournalSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(JournalSecurityRepositoryImpl.class);
+
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+    public static final int DEFAULT_ALARM_HISTORY_LIMIT = 1_000;
+
+    private static final String JOURNAL_FILE = "journal.bin";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final int SNAPSHOT_MAGIC = 0x43415453; //"CATS"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    //journal record types
+    private static final byte SENSOR_PUT = 1;
+    private static final byte SENSOR_REMOVE = 2;
+    private static final byte ALARM = 3;
+    private static final byte ARMING = 4;
+
+    //length + type + timestamp, and the trailing checksum
+    private static final int RECORD_HEADER = Integer.BYTES + Byte.BYTES + Long.BYTES;
+    private static final int RECORD_TRAILER = Integer.BYTES;
+
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final int compactionThreshold;
+    private final boolean syncEachWrite;
+    private final int alarmHistoryLimit;
+
+    private final Set<Sensor> sensors = new TreeSet<>();
+    private final Map<UUID, Sensor> sensorsById = new HashMap<>();
+    //most recent transitions only; older ones are still in the journal
+    private final ArrayDeque<AlarmTransition> alarmHistory = new ArrayDeque<>();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    private FileChannel journal;
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(256);
+    private final CRC32 crc = new CRC32();
+    private int sensorRecordsSinceSnapshot;
+
+    /**
+     * A single change of the alarm status, as recorded in the journal.
+     */
+    public record AlarmTransition(Instant time, AlarmStatus alarmStatus) {
+    }
+
+    public JournalSecurityRepositoryImpl(Path directory) {
+        this(directory, DEFAULT_COMPACTION_THRESHOLD, false);
+    }
+
+    /**
+     * @param directory Directory holding the journal and snapshot files. Created if missing.
+     * @param compactionThreshold Number of sensor records after which a new snapshot is written
+     * @param syncEachWrite If true every record is forced to disk before the call returns
+     */
+    public JournalSecurityRepositoryImpl(Path directory, int compactionThreshold, boolean syncEachWrite) {
+        this(directory, compactionThreshold, syncEachWrite, DEFAULT_ALARM_HISTORY_LIMIT);
+    }
+
+    /**
+     * @param directory Directory holding the journal and snapshot files. Created if missing.
+     * @param compactionThreshold Number of sensor records after which a new snapshot is written
+     * @param syncEachWrite If true every record is forced to disk before the call returns
+     * @param alarmHistoryLimit Number of recent alarm transitions kept for {@link #getAlarmHistory()}, in memory and in the journal
+     */
+    public JournalSecurityRepositoryImpl(Path directory, int compactionThreshold, boolean syncEachWrite, int alarmHistoryLimit) {
+        if(compactionThreshold <= 0 || alarmHistoryLimit <= 0) {
+            throw new IllegalArgumentException("Compaction threshold and alarm history limit must be positive");
+        }
+        this.alarmHistoryLimit = alarmHistoryLimit;
+        this.journalPath = directory.resolve(JOURNAL_FILE);
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.compactionThreshold = compactionThreshold;
+        this.syncEachWrite = syncEachWrite;
+        try {
+            Files.createDirectories(directory);
+            loadSnapshot();
+            journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replayJournal();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open security journal in " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        putSensor(sensor);
+        appendSensor(SENSOR_PUT, sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        Sensor existing = sensorsById.remove(sensor.getSensorId());
+        sensors.remove(existing != null ? existing : sensor);
+        appendSensor(SENSOR_REMOVE, sensor);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        putSensor(sensor);
+        appendSensor(SENSOR_PUT, sensor);
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        long now = System.currentTimeMillis();
+        recordAlarmTransition(new AlarmTransition(Instant.ofEpochMilli(now), alarmStatus));
+        ByteBuffer b = beginRecord(ALARM, now, 1);
+        b.put((byte) alarmStatus.ordinal());
+        append(b);
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        ByteBuffer b = beginRecord(ARMING, System.currentTimeMillis(), 1);
+        b.put((byte) armingStatus.ordinal());
+        append(b);
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return Collections.unmodifiableSet(new TreeSet<>(sensors));
+    }
+
+    @Override
+    public synchronized Sensor getSensor(UUID sensorId) {
+        return sensorsById.get(sensorId);
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * The most recent alarm status changes, up to the alarm history limit, oldest first. Older ones
+     * stay in the journal until the next compaction.
+     */
+    public synchronized List<AlarmTransition> getAlarmHistory() {
+        return Collections.unmodifiableList(new ArrayList<>(alarmHistory));
+    }
+
+    /**
+     * Writes a snapshot of the current sensors and rewrites the journal so it only holds the
+     * latest arming status and the recent alarm history. Runs automatically once enough sensor
+     * records have accumulated.
+     */
+    public synchronized void compact() {
+        try {
+            writeSnapshot();
+            rewriteJournalWithoutSensors();
+            sensorRecordsSinceSnapshot = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compact security journal", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            journal.force(true);
+            journal.close();
+        } catch (IOException e) {
+            log.error("Unable to close security journal", e);
+        }
+    }
+
+    private void putSensor(Sensor sensor) {
+        Sensor existing = sensorsById.put(sensor.getSensorId(), sensor);
+        if(existing != null) {
+            sensors.remove(existing);
+        }
+        sensors.add(sensor);
+    }
+
+    private void appendSensor(byte type, Sensor sensor) {
+        if(type == SENSOR_REMOVE) {
+            ByteBuffer b = beginRecord(type, System.currentTimeMillis(), 2 * Long.BYTES);
+            SensorCodec.writeUuid(b, sensor.getSensorId());
+            append(b);
+        } else {
+            byte[] name = SensorCodec.encodeName(sensor.getName());
+            ByteBuffer b = beginRecord(type, System.currentTimeMillis(), SensorCodec.sensorSize(name));
+            SensorCodec.writeSensor(b, sensor, name);
+            append(b);
+        }
+        if(++sensorRecordsSinceSnapshot >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    private ByteBuffer beginRecord(byte type, long timestamp, int payloadSize) {
+        int size = RECORD_HEADER + payloadSize + RECORD_TRAILER;
+        if(recordBuffer.capacity() < size) {
+            recordBuffer = ByteBuffer.allocate(Math.max(size, recordBuffer.capacity() * 2));
+        }
+        recordBuffer.clear();
+        recordBuffer.putInt(Byte.BYTES + Long.BYTES + payloadSize);
+        recordBuffer.put(type);
+        recordBuffer.putLong(timestamp);
+        return recordBuffer;
+    }
+
+    private void append(ByteBuffer b) {
+        crc.reset();
+        crc.update(b.array(), Integer.BYTES, b.position() - Integer.BYTES);
+        b.putInt((int) crc.getValue());
+        b.flip();
+        try {
+            while(b.hasRemaining()) {
+                journal.write(b);
+            }
+            if(syncEachWrite) {
+                journal.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to append to security journal", e);
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        long position = 0;
+        long size = journal.size();
+        while(position + Integer.BYTES <= size) {
+            header.clear();
+            journal.read(header, position);
+            int bodyLength = header.getInt(0);
+            if(bodyLength < Byte.BYTES + Long.BYTES || position + Integer.BYTES + bodyLength + RECORD_TRAILER > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(bodyLength + RECORD_TRAILER);
+            journal.read(record, position + Integer.BYTES);
+            record.flip();
+            crc.reset();
+            crc.update(record.array(), 0, bodyLength);
+            if(record.getInt(bodyLength) != (int) crc.getValue()) {
+                break;
+            }
+            applyRecord(record);
+            position += Integer.BYTES + bodyLength + RECORD_TRAILER;
+        }
+        if(position < size) {
+            log.warn("Discarding {} bytes of incomplete journal records", size - position);
+            journal.truncate(position);
+        }
+        journal.position(position);
+    }
+
+    private void applyRecord(ByteBuffer record) {
+        byte type = record.get();
+        long timestamp = record.getLong();
+        switch(type) {
+            case SENSOR_PUT -> {
+                putSensor(SensorCodec.readSensor(record));
+                sensorRecordsSinceSnapshot++;
+            }
+            case SENSOR_REMOVE -> {
+                Sensor existing = sensorsById.remove(SensorCodec.readUuid(record));
+                if(existing != null) {
+                    sensors.remove(existing);
+                }
+                sensorRecordsSinceSnapshot++;
+            }
+            case ALARM -> {
+                alarmStatus = AlarmStatus.values()[record.get()];
+                recordAlarmTransition(new AlarmTransition(Instant.ofEpochMilli(timestamp), alarmStatus));
+            }
+            case ARMING -> armingStatus = ArmingStatus.values()[record.get()];
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private void recordAlarmTransition(AlarmTransition transition) {
+        if(alarmHistory.size() == alarmHistoryLimit) {
+            alarmHistory.removeFirst();
+        }
+        alarmHistory.addLast(transition);
+    }
+
+    private void loadSnapshot() throws IOException {
+        if(!Files.exists(snapshotPath)) {
+            return;
+        }
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+        if(b.getInt() != SNAPSHOT_MAGIC || b.getInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Unrecognized snapshot file " + snapshotPath);
+        }
+        int count = b.getInt();
+        for(int i = 0; i < count; i++) {
+            putSensor(SensorCodec.readSensor(b));
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        List<byte[]> names = new ArrayList<>(sensors.size());
+        int size = 3 * Integer.BYTES;
+        for(Sensor s : sensors) {
+            byte[] name = SensorCodec.encodeName(s.getName());
+            names.add(name);
+            size += SensorCodec.sensorSize(name);
+        }
+        ByteBuffer b = ByteBuffer.allocate(size);
+        b.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(sensors.size());
+        int i = 0;
+        for(Sensor s : sensors) {
+            SensorCodec.writeSensor(b, s, names.get(i++));
+        }
+        b.flip();
+        replaceFile(snapshotPath, b);
+    }
+
+    /**
+     * Copies the latest arming record and the alarm records within the history limit into a fresh
+     * journal, file to file without passing through the heap. The sensor records are covered by
+     * the snapshot that was just written, and the newest alarm and arming records are always
+     * kept, so replaying either the old or the new journal on top of it gives the same state if
+     * we crash halfway.
+     */
+    private void rewriteJournalWithoutSensors() throws IOException {
+        //position and length of each record kept
+        ArrayDeque<long[]> alarms = new ArrayDeque<>();
+        long[] arming = null;
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Byte.BYTES);
+        long position = 0;
+        long size = journal.size();
+        while(position < size) {
+            header.clear();
+            journal.read(header, position);
+            int recordLength = Integer.BYTES + header.getInt(0) + RECORD_TRAILER;
+            byte type = header.get(Integer.BYTES);
+            if(type == ALARM) {
+                if(alarms.size() == alarmHistoryLimit) {
+                    alarms.removeFirst();
+                }
+                alarms.addLast(new long[] {position, recordLength});
+            } else if(type == ARMING) {
+                arming = new long[] {position, recordLength};
+            }
+            position += recordLength;
+        }
+        List<long[]> retained = new ArrayList<>(alarms);
+        if(arming != null) {
+            retained.add(arming);
+        }
+        retained.sort(Comparator.comparingLong(record -> record[0]));
+
+        Path tmp = journalPath.resolveSibling(JOURNAL_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for(long[] record : retained) {
+                long copied = 0;
+                while(copied < record[1]) {
+                    copied += journal.transferTo(record[0] + copied, record[1] - copied, out);
+                }
+            }
+            out.force(true);
+        }
+        journal.close();
+        Files.move(tmp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal.position(journal.size());
+    }
+
+    private static void replaceFile(Path target, ByteBuffer contents) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(contents.hasRemaining()) {
+                out.write(contents);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,370 @@
+package com.udacity.security.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Repository that keeps sensor state in a memory-mapped table of fixed-size records. Every
+ * sensor is assigned a dense slot number, so activating or deactivating a sensor is a single
+ * in-place byte write into the mapped file instead of a re-sort and re-serialization of the
+ * whole sensor set. Alarm and arming status live in the table header.
+ *
+ * Sensor names do not fit a fixed-size record, so they are appended to a small side table
+ * keyed by slot. Names only change when a sensor is added, so that file is rarely written.
+ */
+public class MappedSensorTableRepositoryImpl implements SecurityRepository, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MappedSensorTableRepositoryImpl.class);
+
+    private static final String TABLE_FILE = "sensors.table";
+    private static final String NAMES_FILE = "sensors.names";
+    private static final int MAGIC = 0x43415454; //"CATT"
+    private static final int VERSION = 1;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    //header layout
+    private static final int HEADER_SIZE = 32;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int HIGH_WATER_OFFSET = 12;
+    private static final int ALARM_OFFSET = 16;
+    private static final int ARMING_OFFSET = 17;
+
+    //record layout: flags, type, padding, uuid
+    private static final int RECORD_SIZE = 24;
+    private static final int FLAGS_OFFSET = 0;
+    private static final int TYPE_OFFSET = 1;
+    private static final int UUID_OFFSET = 8;
+    private static final byte IN_USE = 1;
+    private static final byte ACTIVE = 2;
+
+    //values() copies the array on every call
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private final Path tablePath;
+    private final Path namesPath;
+    private FileChannel tableChannel;
+    private MappedByteBuffer table;
+    private DataOutputStream names;
+    private int capacity;
+    private int highWater;
+
+    private Sensor[] sensorsBySlot;
+    private String[] namesBySlot;
+    private final Map<UUID, Integer> slotsById = new HashMap<>();
+    private final Set<Sensor> sensors = new TreeSet<>();
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+
+    public MappedSensorTableRepositoryImpl(Path directory) {
+        this(directory, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param directory Directory holding the table and name files. Created if missing.
+     * @param initialCapacity Number of slots to map for a new table. The table doubles when full.
+     */
+    public MappedSensorTableRepositoryImpl(Path directory, int initialCapacity) {
+        if(initialCapacity <= 0) {
+            throw new IllegalArgumentException("Initial capacity must be positive");
+        }
+        this.tablePath = directory.resolve(TABLE_FILE);
+        this.namesPath = directory.resolve(NAMES_FILE);
+        try {
+            Files.createDirectories(directory);
+            boolean existing = Files.exists(tablePath);
+            tableChannel = FileChannel.open(tablePath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if(existing) {
+                openTable();
+            } else {
+                createTable(initialCapacity);
+            }
+            String[] storedNames = readNames();
+            loadSensors(storedNames);
+            rewriteNames();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open sensor table in " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        Integer slot = slotsById.get(sensor.getSensorId());
+        if(slot != null) {
+            updateSensor(sensor);
+            return;
+        }
+        slot = allocateSlot();
+        int offset = recordOffset(slot);
+        table.putLong(offset + UUID_OFFSET, sensor.getSensorId().getMostSignificantBits());
+        table.putLong(offset + UUID_OFFSET + Long.BYTES, sensor.getSensorId().getLeastSignificantBits());
+        table.put(offset + TYPE_OFFSET, (byte) sensor.getSensorType().ordinal());
+        writeName(slot, sensor.getName());
+        //flags last, so a crash never leaves an in-use record without its id
+        table.put(offset + FLAGS_OFFSET, flags(sensor));
+        sensorsBySlot[slot] = sensor;
+        slotsById.put(sensor.getSensorId(), slot);
+        sensors.add(sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        Integer slot = slotsById.remove(sensor.getSensorId());
+        if(slot == null) {
+            return;
+        }
+        table.put(recordOffset(slot) + FLAGS_OFFSET, (byte) 0);
+        sensors.remove(sensorsBySlot[slot]);
+        sensorsBySlot[slot] = null;
+        namesBySlot[slot] = null;
+        pushFreeSlot(slot);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        Integer slot = slotsById.get(sensor.getSensorId());
+        if(slot == null) {
+            addSensor(sensor);
+            return;
+        }
+        int offset = recordOffset(slot);
+        boolean renamed = !Objects.equals(sensor.getName(), namesBySlot[slot])
+                || table.get(offset + TYPE_OFFSET) != sensor.getSensorType().ordinal();
+        table.put(offset + FLAGS_OFFSET, flags(sensor));
+        table.put(offset + TYPE_OFFSET, (byte) sensor.getSensorType().ordinal());
+        if(!Objects.equals(sensor.getName(), namesBySlot[slot])) {
+            writeName(slot, sensor.getName());
+        }
+        Sensor previous = sensorsBySlot[slot];
+        if(previous != sensor) {
+            sensors.remove(previous);
+            sensors.add(sensor);
+            sensorsBySlot[slot] = sensor;
+        } else if(renamed) {
+            //the set is sorted by name and type, so a sensor changed in place has to be found by identity
+            sensors.removeIf(s -> s == sensor);
+            sensors.add(sensor);
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        table.put(ALARM_OFFSET, (byte) alarmStatus.ordinal());
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        table.put(ARMING_OFFSET, (byte) armingStatus.ordinal());
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return Collections.unmodifiableSet(new TreeSet<>(sensors));
+    }
+
+    @Override
+    public synchronized Sensor getSensor(UUID sensorId) {
+        Integer slot = slotsById.get(sensorId);
+        return slot == null ? null : sensorsBySlot[slot];
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return ALARM_STATUSES[table.get(ALARM_OFFSET)];
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return ARMING_STATUSES[table.get(ARMING_OFFSET)];
+    }
+
+    /**
+     * Slot number assigned to the sensor, or -1 if the sensor is not stored in this table.
+     */
+    public synchronized int getSlot(Sensor sensor) {
+        Integer slot = slotsById.get(sensor.getSensorId());
+        return slot == null ? -1 : slot;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            table.force();
+            names.close();
+            tableChannel.close();
+        } catch (IOException e) {
+            log.error("Unable to close sensor table", e);
+        }
+    }
+
+    private void createTable(int initialCapacity) throws IOException {
+        map(initialCapacity);
+        table.putInt(MAGIC_OFFSET, MAGIC);
+        table.putInt(VERSION_OFFSET, VERSION);
+        table.putInt(CAPACITY_OFFSET, initialCapacity);
+        table.putInt(HIGH_WATER_OFFSET, 0);
+        table.put(ALARM_OFFSET, (byte) AlarmStatus.NO_ALARM.ordinal());
+        table.put(ARMING_OFFSET, (byte) ArmingStatus.DISARMED.ordinal());
+        capacity = initialCapacity;
+        highWater = 0;
+    }
+
+    private void openTable() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        tableChannel.read(header, 0);
+        if(header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Unrecognized sensor table " + tablePath);
+        }
+        capacity = header.getInt(CAPACITY_OFFSET);
+        highWater = header.getInt(HIGH_WATER_OFFSET);
+        map(capacity);
+    }
+
+    private void map(int slots) throws IOException {
+        table = tableChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * RECORD_SIZE);
+        sensorsBySlot = sensorsBySlot == null ? new Sensor[slots] : Arrays.copyOf(sensorsBySlot, slots);
+        namesBySlot = namesBySlot == null ? new String[slots] : Arrays.copyOf(namesBySlot, slots);
+    }
+
+    private void loadSensors(String[] storedNames) {
+        for(int slot = 0; slot < highWater; slot++) {
+            int offset = recordOffset(slot);
+            byte flags = table.get(offset + FLAGS_OFFSET);
+            if((flags & IN_USE) == 0) {
+                pushFreeSlot(slot);
+                continue;
+            }
+            Sensor sensor = new Sensor();
+            sensor.setSensorId(new UUID(table.getLong(offset + UUID_OFFSET), table.getLong(offset + UUID_OFFSET + Long.BYTES)));
+            sensor.setSensorType(SENSOR_TYPES[table.get(offset + TYPE_OFFSET)]);
+            sensor.setActive((flags & ACTIVE) != 0);
+            sensor.setName(slot < storedNames.length && storedNames[slot] != null ? storedNames[slot] : "");
+            sensorsBySlot[slot] = sensor;
+            namesBySlot[slot] = sensor.getName();
+            slotsById.put(sensor.getSensorId(), slot);
+            sensors.add(sensor);
+        }
+    }
+
+    private int allocateSlot() {
+        if(freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if(highWater == capacity) {
+            grow();
+        }
+        int slot = highWater++;
+        table.putInt(HIGH_WATER_OFFSET, highWater);
+        return slot;
+    }
+
+    private void grow() {
+        try {
+            table.force();
+            map(capacity * 2);
+            capacity *= 2;
+            table.putInt(CAPACITY_OFFSET, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to grow sensor table", e);
+        }
+    }
+
+    private void pushFreeSlot(int slot) {
+        if(freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    private static int recordOffset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private static byte flags(Sensor sensor) {
+        return (byte) (IN_USE | (Boolean.TRUE.equals(sensor.getActive()) ? ACTIVE : 0));
+    }
+
+    /**
+     * Reads the name side table. Later entries for the same slot replace earlier ones, and a
+     * truncated final entry is ignored.
+     */
+    private String[] readNames() throws IOException {
+        String[] result = new String[highWater];
+        if(!Files.exists(namesPath)) {
+            return result;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(namesPath))) {
+            while(true) {
+                int slot = in.readInt();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                if(slot < result.length) {
+                    result[slot] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+        } catch (EOFException e) {
+            return result;
+        }
+    }
+
+    /**
+     * Drops name entries of removed or renamed sensors and reopens the side table for appending.
+     */
+    private void rewriteNames() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for(int slot = 0; slot < highWater; slot++) {
+                if(namesBySlot[slot] != null) {
+                    writeNameEntry(out, slot, namesBySlot[slot]);
+                }
+            }
+        }
+        Path tmp = namesPath.resolveSibling(NAMES_FILE + ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, namesPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        names = new DataOutputStream(Files.newOutputStream(namesPath, StandardOpenOption.APPEND));
+    }
+
+    private void writeName(int slot, String name) {
+        String value = name == null ? "" : name;
+        try {
+            writeNameEntry(names, slot, value);
+            names.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write sensor name", e);
+        }
+        namesBySlot[slot] = value;
+    }
+
+    private static void writeNameEntry(DataOutputStream out, int slot, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(slot);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,18 @@
+package com.udacity.security.data;
+
+/**
+ * List of strategies a repository can use to decide when in-memory changes are written
+ * to its backing store.
+ */
+public enum PersistenceMode {
+    /**
+     * Every change is written to the backing store before the call returns.
+     */
+    WRITE_THROUGH,
+    /**
+     * Changes only mark the repository dirty. A background flusher coalesces them and
+     * writes a single snapshot once the repository has been quiet for the flush interval,
+     * or once the oldest unwritten change reaches the maximum staleness.
+     */
+    WRITE_BEHIND
+}
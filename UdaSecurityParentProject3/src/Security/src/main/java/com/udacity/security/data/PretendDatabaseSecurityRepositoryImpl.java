@@ -2,82 +2,369 @@ package com.udacity.security.data;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
  * memory and writes it to user preferences between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ *
+ * By default every change is written through to preferences immediately. In
+ * {@link PersistenceMode#WRITE_BEHIND} mode changes only mark the repository dirty and a
+ * background flusher coalesces bursts of changes into a single snapshot write.
  */
 public class PretendDatabaseSecurityRepositoryImpl implements com.udacity.security.data.SecurityRepository {
+    private static final Logger log = LoggerFactory.getLogger(PretendDatabaseSecurityRepositoryImpl.class);
 
     private Set<Sensor> sensors;
+    private final Map<UUID, Sensor> sensorsById = new HashMap<>();
     private com.udacity.security.data.AlarmStatus alarmStatus;
     private com.udacity.security.data.ArmingStatus armingStatus;
 
     //preference keys
     private static final String SENSORS = "SENSORS";
+    private static final String SENSOR_PARTS = "SENSOR_PARTS"; //"<generation>:<chunk count>" of a chunked list
+    private static final String SENSOR_CHUNK_PREFIX = "SENSORS.";  //followed by "<generation>.<index>"
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
-    private static final Gson gson = new Gson(); //used to serialize objects into JSON
+    private static final Gson gson = new Gson(); //used to read sensors saved as JSON by earlier versions
+
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(250);
+    private static final Duration DEFAULT_MAX_STALENESS = Duration.ofSeconds(2);
+
+    private final Preferences prefs;
+    private final PersistenceMode persistenceMode;
+    private final long flushIntervalNanos;
+    private final long maxStalenessNanos;
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook;
+
+    //write-behind bookkeeping, guarded by this
+    private boolean dirty;
+    private long firstDirtyNanos;
+    private long lastChangeNanos;
+    private long snapshotsWritten;
 
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(PersistenceMode.WRITE_THROUGH, DEFAULT_FLUSH_INTERVAL, DEFAULT_MAX_STALENESS);
+    }
+
+    /**
+     * Creates a repository backed by the default preferences node.
+     * @param persistenceMode Whether changes are written through or coalesced in the background
+     * @param flushInterval How long the repository must be quiet before a write-behind snapshot is taken
+     * @param maxStaleness Upper bound on how long a change may stay unwritten during a continuous burst
+     */
+    public PretendDatabaseSecurityRepositoryImpl(PersistenceMode persistenceMode, Duration flushInterval, Duration maxStaleness) {
+        this(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class), persistenceMode, flushInterval, maxStaleness);
+    }
+
+    /**
+     * Creates a repository backed by the provided preferences node. Mostly useful for keeping
+     * benchmarks and experiments away from the real application state.
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs, PersistenceMode persistenceMode, Duration flushInterval, Duration maxStaleness) {
+        if(flushInterval.isNegative() || flushInterval.isZero() || maxStaleness.compareTo(flushInterval) < 0) {
+            throw new IllegalArgumentException("Flush interval must be positive and no longer than the maximum staleness");
+        }
+        this.prefs = prefs;
+        this.persistenceMode = persistenceMode;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxStalenessNanos = maxStaleness.toNanos();
+
         //load system state from prefs, or else default
         alarmStatus = com.udacity.security.data.AlarmStatus.valueOf(prefs.get(ALARM_STATUS, com.udacity.security.data.AlarmStatus.NO_ALARM.toString()));
         armingStatus = com.udacity.security.data.ArmingStatus.valueOf(prefs.get(ARMING_STATUS, com.udacity.security.data.ArmingStatus.DISARMED.toString()));
 
         //we've serialized our sensor objects for storage, which should be a good warning sign that
         // this is likely an impractical solution for a real system
-        String sensorString = prefs.get(SENSORS, null);
+        String sensorString = readSensors();
         if(sensorString == null) {
             sensors = new TreeSet<>();
-        } else {
+        } else if(sensorString.startsWith("[")) {
+            //sensors saved as JSON by earlier versions; rewritten in binary on the next change
             Type type = new TypeToken<Set<Sensor>>() {
             }.getType();
             sensors = gson.fromJson(sensorString, type);
+        } else {
+            sensors = SensorCodec.decode(Base64.getDecoder().decode(sensorString));
+        }
+        sensors.forEach(s -> sensorsById.put(s.getSensorId(), s));
+
+        if(persistenceMode == PersistenceMode.WRITE_BEHIND) {
+            //check several times per interval so a burst is written close to its deadline
+            long tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), flushIntervalNanos / 4);
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "repository-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushIfDue, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+            shutdownHook = new Thread(this::close, "repository-flush-on-exit");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else {
+            flusher = null;
+            shutdownHook = null;
         }
     }
 
     @Override
-    public void addSensor(Sensor sensor) {
+    public synchronized void addSensor(Sensor sensor) {
         sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        sensorsById.put(sensor.getSensorId(), sensor);
+        sensorsChanged();
     }
 
     @Override
-    public void removeSensor(Sensor sensor) {
+    public synchronized void removeSensor(Sensor sensor) {
         sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        sensorsById.remove(sensor.getSensorId());
+        sensorsChanged();
     }
 
     @Override
-    public void updateSensor(Sensor sensor) {
+    public synchronized void updateSensor(Sensor sensor) {
         sensors.remove(sensor);
         sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        sensorsById.put(sensor.getSensorId(), sensor);
+        sensorsChanged();
+    }
+
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> changedSensors) {
+        for(Sensor sensor : changedSensors) {
+            sensors.remove(sensor);
+            sensors.add(sensor);
+            sensorsById.put(sensor.getSensorId(), sensor);
+        }
+        sensorsChanged();
     }
 
     @Override
-    public void setAlarmStatus(com.udacity.security.data.AlarmStatus alarmStatus) {
+    public synchronized Sensor getSensor(UUID sensorId) {
+        return sensorsById.get(sensorId);
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(com.udacity.security.data.AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        if(isWriteBehind()) {
+            markDirty();
+        } else {
+            prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        }
     }
 
     @Override
-    public void setArmingStatus(com.udacity.security.data.ArmingStatus armingStatus) {
+    public synchronized void setArmingStatus(com.udacity.security.data.ArmingStatus armingStatus) {
         this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        if(isWriteBehind()) {
+            markDirty();
+        } else {
+            prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        }
+    }
+
+    public PersistenceMode getPersistenceMode() {
+        return persistenceMode;
+    }
+
+    /**
+     * Number of times the full state has been written to preferences. In write-through mode
+     * every sensor change counts as one write.
+     */
+    public synchronized long getSnapshotsWritten() {
+        return snapshotsWritten;
+    }
+
+    /**
+     * Immediately writes any pending write-behind changes to preferences.
+     */
+    public synchronized void flush() {
+        if(dirty) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Stops the background flusher and writes any pending changes. Changes made after closing
+     * are written through.
+     */
+    public void close() {
+        if(flusher != null) {
+            flusher.shutdown();
+            //the hook holds on to the repository, so it must not outlive it
+            if(Thread.currentThread() != shutdownHook) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                } catch (IllegalStateException e) {
+                    //the JVM is already shutting down and runs the hook anyway
+                }
+            }
+        }
+        flush();
+        try {
+            prefs.flush();
+        } catch (BackingStoreException e) {
+            log.error("Unable to flush repository preferences", e);
+        }
+    }
+
+    private boolean isWriteBehind() {
+        return flusher != null && !flusher.isShutdown();
+    }
+
+    private void sensorsChanged() {
+        if(isWriteBehind()) {
+            markDirty();
+        } else {
+            writeSensors(encodeSensors());
+            snapshotsWritten++;
+        }
+    }
+
+    private void markDirty() {
+        long now = System.nanoTime();
+        if(!dirty) {
+            dirty = true;
+            firstDirtyNanos = now;
+        }
+        lastChangeNanos = now;
+    }
+
+    /**
+     * Runs on the flusher thread. Writes a snapshot once changes have settled for a full flush
+     * interval, or when the oldest pending change is about to exceed the maximum staleness.
+     */
+    private synchronized void flushIfDue() {
+        if(!dirty) {
+            return;
+        }
+        long now = System.nanoTime();
+        if(now - lastChangeNanos >= flushIntervalNanos || now - firstDirtyNanos >= maxStalenessNanos) {
+            try {
+                writeSnapshot();
+            } catch (RuntimeException e) {
+                //keep the repository dirty so the next tick retries
+                log.error("Unable to write repository snapshot", e);
+            }
+        }
+    }
+
+    private void writeSnapshot() {
+        writeSensors(encodeSensors());
+        prefs.put(ALARM_STATUS, alarmStatus.toString());
+        prefs.put(ARMING_STATUS, armingStatus.toString());
+        snapshotsWritten++;
+        dirty = false;
+    }
+
+    /**
+     * Sensors in the compact binary format, as Base64 since preferences only hold strings. Base64
+     * never starts with '[', which tells it apart from the JSON that earlier versions stored.
+     */
+    private String encodeSensors() {
+        return Base64.getEncoder().encodeToString(SensorCodec.encode(sensors));
+    }
+
+    /**
+     * Preferences refuses values longer than {@link Preferences#MAX_VALUE_LENGTH}, which the
+     * sensor list passes at a few dozen sensors, so longer lists are split across numbered keys.
+     *
+     * Each chunked write uses a new generation of keys and only becomes visible when the single
+     * SENSOR_PARTS value is switched to it, so a crash part-way through leaves the previous list
+     * readable rather than a mix of old and new chunks. Chunks of other generations are removed
+     * afterwards. A chunk never ends between the two halves of a surrogate pair.
+     */
+    private void writeSensors(String sensorString) {
+        if(sensorString.length() <= Preferences.MAX_VALUE_LENGTH) {
+            prefs.put(SENSORS, sensorString);
+            //the single value is used once the chunks are no longer referenced
+            prefs.remove(SENSOR_PARTS);
+            removeSensorChunks(null);
+            return;
+        }
+        long generation = parseParts(prefs.get(SENSOR_PARTS, null))[0] + 1;
+        int chunks = 0;
+        int start = 0;
+        while(start < sensorString.length()) {
+            int end = Math.min(sensorString.length(), start + Preferences.MAX_VALUE_LENGTH);
+            if(end < sensorString.length() && Character.isHighSurrogate(sensorString.charAt(end - 1))) {
+                end--;
+            }
+            prefs.put(chunkKey(generation, chunks++), sensorString.substring(start, end));
+            start = end;
+        }
+        prefs.put(SENSOR_PARTS, generation + ":" + chunks);
+        prefs.remove(SENSORS);
+        removeSensorChunks(generation);
+    }
+
+    private String readSensors() {
+        long[] parts = parseParts(prefs.get(SENSOR_PARTS, null));
+        if(parts[1] == 0) {
+            return prefs.get(SENSORS, null);
+        }
+        StringBuilder sensorString = new StringBuilder((int) parts[1] * Preferences.MAX_VALUE_LENGTH);
+        for(int i = 0; i < parts[1]; i++) {
+            String chunk = prefs.get(chunkKey(parts[0], i), null);
+            if(chunk == null) {
+                throw new IllegalStateException("Sensor list chunk " + i + " of generation " + parts[0] + " is missing");
+            }
+            sensorString.append(chunk);
+        }
+        return sensorString.toString();
+    }
+
+    //removes the chunks of every generation except the given one, which may be null for all of them
+    private void removeSensorChunks(Long keep) {
+        String keepPrefix = keep == null ? null : SENSOR_CHUNK_PREFIX + keep + ".";
+        try {
+            for(String key : prefs.keys()) {
+                if(key.startsWith(SENSOR_CHUNK_PREFIX) && (keepPrefix == null || !key.startsWith(keepPrefix))) {
+                    prefs.remove(key);
+                }
+            }
+        } catch (BackingStoreException e) {
+            //only leaves unreferenced keys behind, which the next write tries again
+            log.warn("Unable to remove old sensor list chunks", e);
+        }
+    }
+
+    private static String chunkKey(long generation, int index) {
+        return SENSOR_CHUNK_PREFIX + generation + "." + index;
+    }
+
+    //generation and chunk count of a SENSOR_PARTS value, both 0 if there is none
+    private static long[] parseParts(String parts) {
+        if(parts == null) {
+            return new long[] {0, 0};
+        }
+        int separator = parts.indexOf(':');
+        return new long[] {Long.parseLong(parts.substring(0, separator)), Long.parseLong(parts.substring(separator + 1))};
     }
 
     @Override
-    public Set<Sensor> getSensors() {
-        return sensors;
+    public synchronized Set<Sensor> getSensors() {
+        return Collections.unmodifiableSet(new TreeSet<>(sensors));
     }
 
     @Override
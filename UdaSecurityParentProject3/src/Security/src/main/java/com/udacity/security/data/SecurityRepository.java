@@ -1,6 +1,8 @@
 package com.udacity.security.data;
 
+import java.util.Collection;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Interface showing the methods our security repository will need to support
@@ -9,8 +11,30 @@ public interface SecurityRepository {
     void addSensor(Sensor sensor);
     void removeSensor(Sensor sensor);
     void updateSensor(Sensor sensor);
+
+    /**
+     * Persist changes to several sensors at once. Implementations that write their whole state
+     * on every change should override this to write only once per batch.
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
+    /**
+     * Look up a sensor by its id, or null if there is no such sensor. Implementations should
+     * override the default linear scan with an index.
+     */
+    default Sensor getSensor(UUID sensorId) {
+        return getSensors().stream().filter(s -> s.getSensorId().equals(sensorId)).findFirst().orElse(null);
+    }
+
     void setAlarmStatus(AlarmStatus alarmStatus);
     void setArmingStatus(ArmingStatus armingStatus);
+
+    /**
+     * Snapshot of the sensors, sorted by name, that stays safe to iterate while other threads
+     * change the repository.
+     */
     Set<Sensor> getSensors();
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
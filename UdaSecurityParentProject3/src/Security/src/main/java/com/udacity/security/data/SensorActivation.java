@@ -0,0 +1,10 @@
+package com.udacity.security.data;
+
+import java.util.UUID;
+
+/**
+ * A requested change to the activation status of a single sensor, identified by its id.
+ * Used to hand the SecurityService a whole batch of sensor events at once.
+ */
+public record SensorActivation(UUID sensorId, boolean active) {
+}
@@ -0,0 +1,179 @@
+package com.udacity.security.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of sensors, replacing reflective JSON for storage.
+ *
+ * A single sensor is its id as two longs, its type as one byte, its active flag as one byte and
+ * its name as length-prefixed UTF-8. A whole set of sensors starts with a magic number, a format
+ * version and the count, followed by the active flags of all sensors packed eight to a byte, then
+ * each sensor without its flag and with a variable-length name length, which keeps a typical
+ * sensor under 30 bytes.
+ */
+public final class SensorCodec {
+
+    public static final int MAGIC = 0x534E5352; //"SNSR"
+    public static final byte VERSION = 1;
+
+    private static final int HEADER = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+
+    private SensorCodec() {
+    }
+
+    /**
+     * Encodes the sensors in iteration order.
+     */
+    public static byte[] encode(Collection<Sensor> sensors) {
+        List<byte[]> names = new ArrayList<>(sensors.size());
+        int size = HEADER + (sensors.size() + 7) / 8;
+        for(Sensor sensor : sensors) {
+            byte[] name = encodeName(sensor.getName());
+            names.add(name);
+            size += 2 * Long.BYTES + Byte.BYTES + varIntSize(name.length) + name.length;
+        }
+        ByteBuffer b = ByteBuffer.allocate(size);
+        b.putInt(MAGIC).put(VERSION).putInt(sensors.size());
+        int flagsStart = b.position();
+        int i = 0;
+        for(Sensor sensor : sensors) {
+            if(Boolean.TRUE.equals(sensor.getActive())) {
+                int index = flagsStart + i / 8;
+                b.put(index, (byte) (b.get(index) | 1 << (i % 8)));
+            }
+            i++;
+        }
+        b.position(flagsStart + (sensors.size() + 7) / 8);
+        i = 0;
+        for(Sensor sensor : sensors) {
+            byte[] name = names.get(i++);
+            writeUuid(b, sensor.getSensorId());
+            b.put((byte) sensor.getSensorType().ordinal());
+            putVarInt(b, name.length);
+            b.put(name);
+        }
+        return b.array();
+    }
+
+    /**
+     * Decodes a set of sensors written by {@link #encode(Collection)}.
+     * @throws IllegalArgumentException if the data is not a sensor set or of an unknown version
+     */
+    public static Set<Sensor> decode(byte[] data) {
+        ByteBuffer b = ByteBuffer.wrap(data);
+        try {
+            if(b.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an encoded sensor set");
+            }
+            byte version = b.get();
+            if(version != VERSION) {
+                throw new IllegalArgumentException("Unsupported sensor set version " + version);
+            }
+            int count = b.getInt();
+            if(count < 0 || (count + 7) / 8 > b.remaining()) {
+                throw new IllegalArgumentException("Corrupt sensor count " + count);
+            }
+            int flagsStart = b.position();
+            b.position(flagsStart + (count + 7) / 8);
+            SensorType[] types = SensorType.values();
+            List<Sensor> sensors = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                Sensor sensor = new Sensor();
+                sensor.setSensorId(readUuid(b));
+                sensor.setSensorType(types[b.get()]);
+                sensor.setActive((b.get(flagsStart + i / 8) & 1 << (i % 8)) != 0);
+                byte[] name = new byte[getVarInt(b)];
+                b.get(name);
+                sensor.setName(new String(name, StandardCharsets.UTF_8));
+                sensors.add(sensor);
+            }
+            return new TreeSet<>(sensors);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated sensor set", e);
+        }
+    }
+
+    /**
+     * Size of a single sensor written by {@link #writeSensor(ByteBuffer, Sensor, byte[])}.
+     * @param name The sensor's name as returned by {@link #encodeName(String)}
+     */
+    public static int sensorSize(byte[] name) {
+        return 2 * Long.BYTES + 2 * Byte.BYTES + Integer.BYTES + name.length;
+    }
+
+    /**
+     * Writes a single sensor, including its active flag, for records that hold one sensor each.
+     * @param name The sensor's name as returned by {@link #encodeName(String)}
+     */
+    public static void writeSensor(ByteBuffer b, Sensor sensor, byte[] name) {
+        writeUuid(b, sensor.getSensorId());
+        b.put((byte) sensor.getSensorType().ordinal());
+        b.put((byte) (Boolean.TRUE.equals(sensor.getActive()) ? 1 : 0));
+        b.putInt(name.length);
+        b.put(name);
+    }
+
+    public static Sensor readSensor(ByteBuffer b) {
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(readUuid(b));
+        sensor.setSensorType(SensorType.values()[b.get()]);
+        sensor.setActive(b.get() != 0);
+        byte[] name = new byte[b.getInt()];
+        b.get(name);
+        sensor.setName(new String(name, StandardCharsets.UTF_8));
+        return sensor;
+    }
+
+    /**
+     * UTF-8 bytes of the name, with a missing name stored as an empty one.
+     */
+    public static byte[] encodeName(String name) {
+        return name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void writeUuid(ByteBuffer b, UUID id) {
+        b.putLong(id.getMostSignificantBits());
+        b.putLong(id.getLeastSignificantBits());
+    }
+
+    public static UUID readUuid(ByteBuffer b) {
+        return new UUID(b.getLong(), b.getLong());
+    }
+
+    //unsigned LEB128: seven bits per byte, high bit set on all but the last
+    private static int varIntSize(int value) {
+        int size = 1;
+        while((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarInt(ByteBuffer b, int value) {
+        while((value & ~0x7F) != 0) {
+            b.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        b.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer b) {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            byte next = b.get();
+            value |= (next & 0x7F) << shift;
+            if(next >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed length");
+    }
+}
@@ -0,0 +1,309 @@
+package com.udacity.security.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.udacity.security.application.StatusListener;
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes alarm transitions and cat verdicts to HTTP clients as server-sent events, so consoles
+ * can follow the system without polling. Each event carries a sequence number as its id; a client
+ * that reconnects with a Last-Event-ID header is sent the events it missed, as long as they are
+ * still in the recent history, and otherwise a fresh snapshot of the current state.
+ *
+ * The SecurityService only pays for appending an event to the history and to a small ring buffer
+ * per subscriber. Every subscriber is written to by its own request thread, and a subscriber that
+ * falls a whole buffer behind is disconnected rather than slowing down the others; it can
+ * reconnect and resume from the last event it received.
+ */
+public class AlarmEventStream implements StatusListener, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(AlarmEventStream.class);
+
+    public static final int DEFAULT_HISTORY_SIZE = 1024;
+    public static final int DEFAULT_SUBSCRIBER_BUFFER_SIZE = 256;
+
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    private record Event(long id, String type, String data) {
+        private byte[] encode() {
+            return ("id: " + id + "\nevent: " + type + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private final SecurityService securityService;
+    private final int subscriberBufferSize;
+
+    //recent events for resuming subscribers, guarded by historyLock together with nextId
+    private final ReentrantLock historyLock = new ReentrantLock();
+    private final Event[] history;
+    private int historyHead;
+    private int historySize;
+    private long nextId = 1;
+
+    private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+    private volatile boolean closed;
+
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong disconnectedCount = new AtomicLong();
+
+    public AlarmEventStream(SecurityService securityService) {
+        this(securityService, DEFAULT_HISTORY_SIZE, DEFAULT_SUBSCRIBER_BUFFER_SIZE);
+    }
+
+    /**
+     * @param historySize Number of recent events kept for clients resuming with Last-Event-ID
+     * @param subscriberBufferSize Number of undelivered events after which a subscriber is disconnected
+     */
+    public AlarmEventStream(SecurityService securityService, int historySize, int subscriberBufferSize) {
+        if(historySize <= 0 || subscriberBufferSize <= 0) {
+            throw new IllegalArgumentException("History and buffer sizes must be positive");
+        }
+        this.securityService = securityService;
+        this.history = new Event[historySize];
+        this.subscriberBufferSize = subscriberBufferSize;
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        publish("alarm", "{\"alarmStatus\":\"" + status + "\"}");
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        publish("cat", "{\"catDetected\":" + catDetected + "}");
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        //sensor changes are not part of the feed; their effect on the alarm status is
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * Number of subscribers disconnected for falling too far behind.
+     */
+    public long getDisconnectedCount() {
+        return disconnectedCount.get();
+    }
+
+    /**
+     * Ends every subscription.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        subscribers.forEach(Subscriber::close);
+        subscribers.clear();
+    }
+
+    /**
+     * Streams events to the client until it disconnects, falls behind or the stream is closed.
+     * Runs on, and occupies, the request thread.
+     */
+    void handle(HttpExchange exchange) throws IOException {
+        Subscriber subscriber = new Subscriber(subscriberBufferSize);
+        List<Event> backlog = subscribe(subscriber, lastEventId(exchange));
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("retry: 2000\n\n".getBytes(StandardCharsets.UTF_8));
+            for(Event event : backlog) {
+                out.write(event.encode());
+            }
+            out.flush();
+            subscriber.stream(out);
+        } catch (IOException e) {
+            log.debug("Event subscriber went away", e);
+        } finally {
+            subscribers.remove(subscriber);
+            //a slow subscriber is cut off by interrupting its thread, which must not leak into the pool
+            subscriber.close();
+            Thread.interrupted();
+        }
+    }
+
+    private void publish(String type, String data) {
+        historyLock.lock();
+        try {
+            Event event = new Event(nextId++, type, data);
+            history[(historyHead + historySize) % history.length] = event;
+            if(historySize == history.length) {
+                historyHead = (historyHead + 1) % history.length;
+            } else {
+                historySize++;
+            }
+            publishedCount.incrementAndGet();
+            for(Subscriber subscriber : subscribers) {
+                if(!subscriber.offer(event)) {
+                    subscribers.remove(subscriber);
+                    disconnectedCount.incrementAndGet();
+                    log.warn("Disconnecting event subscriber that fell {} events behind", subscriberBufferSize);
+                }
+            }
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    /**
+     * Registers the subscriber and returns what it should be sent first: the events after the one
+     * it last saw, or a snapshot of the current state if those are no longer known. Holding the
+     * history lock makes sure no event is missed or sent twice in between.
+     */
+    private List<Event> subscribe(Subscriber subscriber, long lastEventId) {
+        historyLock.lock();
+        try {
+            List<Event> backlog = new ArrayList<>();
+            long oldestId = historySize == 0 ? nextId : history[historyHead].id();
+            if(lastEventId >= oldestId - 1 && lastEventId < nextId) {
+                for(int i = 0; i < historySize; i++) {
+                    Event event = history[(historyHead + i) % history.length];
+                    if(event.id() > lastEventId) {
+                        backlog.add(event);
+                    }
+                }
+            } else {
+                backlog.add(new Event(nextId - 1, "state", "{\"alarmStatus\":\"" + securityService.getAlarmStatus()
+                        + "\",\"armingStatus\":\"" + securityService.getArmingStatus() + "\"}"));
+            }
+            if(closed) {
+                subscriber.disconnected = true;
+            } else {
+                subscribers.add(subscriber);
+            }
+            return backlog;
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    private static long lastEventId(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        if(header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private class Subscriber {
+        //ring buffer guarded by lock
+        private final Event[] events;
+        private int head;
+        private int size;
+        private boolean disconnected;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Thread thread = Thread.currentThread();
+
+        private Subscriber(int capacity) {
+            this.events = new Event[capacity];
+        }
+
+        /**
+         * Queues the event, or disconnects the subscriber if its buffer is full.
+         * @return false if the subscriber was disconnected
+         */
+        private boolean offer(Event event) {
+            lock.lock();
+            try {
+                if(disconnected) {
+                    return false;
+                }
+                if(size == events.length) {
+                    disconnect();
+                    return false;
+                }
+                events[(head + size) % events.length] = event;
+                size++;
+                notEmpty.signal();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void close() {
+            lock.lock();
+            try {
+                disconnect();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        //must hold lock; interrupting also unblocks a write to a client that stopped reading.
+        //only the first call interrupts, so once the request thread has closed its own
+        //subscriber it can safely clear the flag and move on to other requests
+        private void disconnect() {
+            if(!disconnected) {
+                disconnected = true;
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Writes queued events as they arrive, with a comment line when idle so dead connections
+         * are noticed.
+         */
+        private void stream(OutputStream out) throws IOException {
+            List<Event> batch = new ArrayList<>();
+            while(true) {
+                lock.lock();
+                try {
+                    long wait = HEARTBEAT_NANOS;
+                    while(size == 0 && !disconnected && wait > 0) {
+                        wait = notEmpty.awaitNanos(wait);
+                    }
+                    if(disconnected) {
+                        return;
+                    }
+                    while(size > 0) {
+                        batch.add(events[head]);
+                        events[head] = null;
+                        head = (head + 1) % events.length;
+                        size--;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+                if(batch.isEmpty()) {
+                    out.write(": keepalive\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+                for(Event event : batch) {
+                    out.write(event.encode());
+                }
+                out.flush();
+                batch.clear();
+            }
+        }
+    }
+}
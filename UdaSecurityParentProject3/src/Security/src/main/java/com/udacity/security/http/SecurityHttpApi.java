@@ -0,0 +1,296 @@
+package com.udacity.security.http;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorActivation;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.service.ConcurrentSecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exposes a SecurityService over HTTP with JSON bodies, using the HTTP server built into the JDK.
+ *
+ * GET /status returns the alarm and arming status and the number of sensors.
+ * GET /sensors lists the sensors, POST /sensors adds one from {"name", "sensorType"}, and
+ * PUT and DELETE on /sensors/{sensorId} change a sensor's {"active"} flag or remove it.
+ * POST /sensors/activations applies a batch of [{"sensorId", "active"}] sensor events at once.
+ * PUT /arming changes the {"armingStatus"}.
+ * POST /images takes an encoded picture (JPEG, PNG, ...) and returns {"catDetected"}.
+ * GET /events streams alarm transitions and cat verdicts as server-sent events, see AlarmEventStream.
+ *
+ * Requests are handled concurrently, so the service is a ConcurrentSecurityService.
+ */
+public class SecurityHttpApi implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(SecurityHttpApi.class);
+
+    private static final Gson gson = new Gson();
+
+    private final ConcurrentSecurityService securityService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AlarmEventStream eventStream;
+
+    /**
+     * Binds the server to the address; it does not accept requests before {@link #start()}.
+     * @param address Address to listen on, port 0 for any free port
+     */
+    public SecurityHttpApi(ConcurrentSecurityService securityService, InetSocketAddress address) throws IOException {
+        this.securityService = securityService;
+        this.server = HttpServer.create(address, 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "http-api-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/status", handler(this::handleStatus));
+        server.createContext("/sensors", handler(this::handleSensors));
+        server.createContext("/arming", handler(this::handleArming));
+        server.createContext("/images", handler(this::handleImages));
+        eventStream = new AlarmEventStream(securityService);
+        server.createContext("/events", handler(exchange -> {
+            requireMethod(exchange, "GET");
+            eventStream.handle(exchange);
+        }));
+        securityService.addStatusListener(eventStream);
+    }
+
+    public void start() {
+        server.start();
+        log.info("Security API listening on {}", getAddress());
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public AlarmEventStream getEventStream() {
+        return eventStream;
+    }
+
+    /**
+     * Ends event subscriptions, stops accepting requests and gives requests in progress up to a
+     * second to finish.
+     */
+    @Override
+    public void close() {
+        securityService.removeStatusListener(eventStream);
+        eventStream.close();
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        sendStatus(exchange);
+    }
+
+    private void sendStatus(HttpExchange exchange) throws IOException {
+        JsonObject status = new JsonObject();
+        status.addProperty("alarmStatus", securityService.getAlarmStatus().toString());
+        status.addProperty("armingStatus", securityService.getArmingStatus().toString());
+        status.addProperty("sensors", securityService.getSensors().size());
+        status.addProperty("activeSensors", securityService.getActiveSensorCount());
+        sendJson(exchange, 200, status);
+    }
+
+    private void handleSensors(HttpExchange exchange) throws IOException {
+        String[] path = pathSegments(exchange);
+        String method = exchange.getRequestMethod();
+        if(path.length == 1) {
+            if(method.equals("GET")) {
+                sendJson(exchange, 200, securityService.getSensors());
+                return;
+            }
+            requireMethod(exchange, "POST");
+            JsonObject body = readJsonObject(exchange);
+            Sensor sensor = new Sensor(requireString(body, "name"),
+                    parseEnum(SensorType.class, requireString(body, "sensorType")));
+            securityService.addSensor(sensor);
+            sendJson(exchange, 201, sensor);
+        } else if(path.length == 2 && path[1].equals("activations")) {
+            requireMethod(exchange, "POST");
+            SensorActivation[] activations = readJson(exchange, SensorActivation[].class);
+            List<SensorActivation> changes = Arrays.asList(activations);
+            if(changes.contains(null) || changes.stream().anyMatch(a -> a.sensorId() == null)) {
+                throw new ApiException(400, "Every activation needs a sensorId");
+            }
+            securityService.changeSensorActivationStatus(changes);
+            sendStatus(exchange);
+        } else if(path.length == 2) {
+            Sensor sensor = securityService.getSensor(parseSensorId(path[1]));
+            if(sensor == null) {
+                throw new ApiException(404, "No sensor " + path[1]);
+            }
+            if(method.equals("DELETE")) {
+                securityService.removeSensor(sensor);
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+                return;
+            }
+            requireMethod(exchange, "PUT");
+            JsonObject body = readJsonObject(exchange);
+            if(!body.has("active") || !body.get("active").isJsonPrimitive()) {
+                throw new ApiException(400, "Missing field active");
+            }
+            securityService.changeSensorActivationStatus(sensor, body.get("active").getAsBoolean());
+            sendJson(exchange, 200, sensor);
+        } else {
+            throw new ApiException(404, "Unknown path " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    private void handleArming(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "PUT");
+        JsonObject body = readJsonObject(exchange);
+        securityService.setArmingStatus(parseEnum(ArmingStatus.class, requireString(body, "armingStatus")));
+        sendStatus(exchange);
+    }
+
+    private void handleImages(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "POST");
+        BufferedImage image;
+        try (InputStream body = exchange.getRequestBody()) {
+            image = ImageIO.read(body);
+        }
+        if(image == null) {
+            throw new ApiException(400, "Body is not an image in a supported format");
+        }
+        boolean cat = securityService.processImageAsync(image).join();
+        JsonObject verdict = new JsonObject();
+        verdict.addProperty("catDetected", cat);
+        verdict.addProperty("alarmStatus", securityService.getAlarmStatus().toString());
+        sendJson(exchange, 200, verdict);
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    //turns exceptions into error responses, so handlers only deal with the successful case
+    private static HttpHandler handler(Handler handler) {
+        return exchange -> {
+            try {
+                handler.handle(exchange);
+            } catch (ApiException e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("Unable to handle {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+                sendError(exchange, 500, "Internal error");
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        sendJson(exchange, status, error);
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if(!exchange.getRequestMethod().equals(method)) {
+            throw new ApiException(405, "Method " + exchange.getRequestMethod() + " not allowed");
+        }
+    }
+
+    private static String[] pathSegments(HttpExchange exchange) {
+        return Arrays.stream(exchange.getRequestURI().getPath().split("/"))
+                .filter(s -> !s.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private static JsonObject readJsonObject(HttpExchange exchange) throws IOException {
+        JsonElement body;
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            body = JsonParser.parseReader(reader);
+        } catch (JsonParseException e) {
+            throw new ApiException(400, "Malformed JSON body");
+        }
+        if(!body.isJsonObject()) {
+            throw new ApiException(400, "Body must be a JSON object");
+        }
+        return body.getAsJsonObject();
+    }
+
+    private static <T> T readJson(HttpExchange exchange, Class<T> type) throws IOException {
+        T value;
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            value = gson.fromJson(reader, type);
+        } catch (JsonParseException e) {
+            throw new ApiException(400, "Malformed JSON body");
+        }
+        if(value == null) {
+            throw new ApiException(400, "Missing body");
+        }
+        return value;
+    }
+
+    private static String requireString(JsonObject body, String field) {
+        if(!body.has(field) || !body.get(field).isJsonPrimitive()) {
+            throw new ApiException(400, "Missing field " + field);
+        }
+        return body.get(field).getAsString();
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        try {
+            return Enum.valueOf(type, value);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Unknown " + type.getSimpleName() + " " + value);
+        }
+    }
+
+    private static UUID parseSensorId(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(404, "No sensor " + value);
+        }
+    }
+
+    private static class ApiException extends RuntimeException {
+        private final int status;
+
+        private ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.udacity.security.service;
+
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Incrementally maintained record of which sensors are active, so the SecurityService can tell
+ * whether any sensor is active without scanning every sensor in the repository. Sensors are
+ * tracked by id, which makes repeated activations or deactivations of the same sensor harmless.
+ */
+class ActiveSensorCounter {
+
+    private final Map<UUID, ActiveSensor> activeSensors = new HashMap<>();
+    private final int[] activeByType = new int[SensorType.values().length];
+
+    //remembers the type at activation time, so the right per-type count is decremented later
+    private record ActiveSensor(Sensor sensor, SensorType sensorType) {
+    }
+
+    /**
+     * Forget everything and start counting from the current state of the provided sensors.
+     */
+    void reset(Collection<Sensor> sensors) {
+        clear();
+        sensors.forEach(s -> update(s, s.getActive()));
+    }
+
+    void update(Sensor sensor, boolean active) {
+        if(active) {
+            if(activeSensors.putIfAbsent(sensor.getSensorId(), new ActiveSensor(sensor, sensor.getSensorType())) == null) {
+                activeByType[sensor.getSensorType().ordinal()]++;
+            }
+        } else {
+            remove(sensor);
+        }
+    }
+
+    void remove(Sensor sensor) {
+        ActiveSensor removed = activeSensors.remove(sensor.getSensorId());
+        if(removed != null) {
+            activeByType[removed.sensorType().ordinal()]--;
+        }
+    }
+
+    void clear() {
+        activeSensors.clear();
+        Arrays.fill(activeByType, 0);
+    }
+
+    int getActiveCount() {
+        return activeSensors.size();
+    }
+
+    int getActiveCount(SensorType sensorType) {
+        return activeByType[sensorType.ordinal()];
+    }
+
+    /**
+     * Copy of the currently active sensors, safe to iterate while deactivating them.
+     */
+    List<Sensor> getActiveSensors() {
+        List<Sensor> sensors = new ArrayList<>(activeSensors.size());
+        activeSensors.values().forEach(a -> sensors.add(a.sensor()));
+        return sensors;
+    }
+
+    /**
+     * Debug check that compares the counters against a full scan of the provided sensors.
+     * @throws IllegalStateException if the counters have drifted from the actual sensor state
+     */
+    void verify(Collection<Sensor> sensors) {
+        int[] scanned = new int[activeByType.length];
+        sensors.stream().filter(Sensor::getActive).forEach(s -> scanned[s.getSensorType().ordinal()]++);
+        for(SensorType type : SensorType.values()) {
+            if(scanned[type.ordinal()] != activeByType[type.ordinal()]) {
+                throw new IllegalStateException(String.format("Active %s sensor count is %d but a full scan found %d",
+                        type, activeByType[type.ordinal()], scanned[type.ordinal()]));
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.udacity.security.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Accepts frames from any number of named cameras and classifies them on a pool of worker
+ * threads, feeding the combined verdict to the SecurityService.
+ *
+ * Each camera holds at most one pending frame: a frame that arrives before the previous one was
+ * picked up replaces it and counts as dropped, so a busy site always classifies the most recent
+ * picture from every camera instead of working through a backlog. Cameras with a pending frame
+ * wait in a single ready queue and go back to its end after each classification, so every
+ * camera gets a turn before any camera gets a second one. A camera never has more than one frame
+ * being classified at a time.
+ *
+ * The system sees a cat while any camera's latest verdict is a cat. Verdicts are applied one at a
+ * time, but from the worker threads, so the SecurityService must tolerate being called from a
+ * thread other than the one changing sensors; ConcurrentSecurityService does.
+ */
+public class CameraIngestionService implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CameraIngestionService.class);
+
+    private final SecurityService securityService;
+    private final Map<String, Camera> cameras = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Camera> readyCameras = new LinkedBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean closed;
+
+    //number of cameras whose latest verdict is a cat, guarded by verdictLock
+    private final Object verdictLock = new Object();
+    private int camerasSeeingCat;
+
+    /**
+     * Point-in-time statistics for one camera.
+     * @param framesPerSecond Rate frames are arriving at, smoothed over roughly the last second
+     * @param lastQueueLatencyNanos Time the most recently classified frame waited before a worker picked it up
+     */
+    public record CameraStats(String cameraId, long framesReceived, long framesClassified, long framesDropped,
+                              double framesPerSecond, long lastQueueLatencyNanos, long maxQueueLatencyNanos,
+                              boolean catDetected) {
+    }
+
+    private record Frame(BufferedImage image, long receivedNanos) {
+    }
+
+    private static class Camera {
+        private final String cameraId;
+        private final AtomicReference<Frame> pending = new AtomicReference<>();
+        //true while the camera is in the ready queue or one of its frames is being classified
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicLong framesReceived = new AtomicLong();
+        private final AtomicLong framesClassified = new AtomicLong();
+        private final AtomicLong framesDropped = new AtomicLong();
+        private final AtomicLong maxQueueLatencyNanos = new AtomicLong();
+        private volatile long lastQueueLatencyNanos;
+        private boolean catDetected;
+
+        //exponentially weighted average of the time between frames, guarded by the camera
+        private long lastFrameNanos;
+        private double averageIntervalNanos;
+
+        private Camera(String cameraId) {
+            this.cameraId = cameraId;
+        }
+
+        private synchronized void recordArrival(long now) {
+            if(lastFrameNanos != 0) {
+                long interval = now - lastFrameNanos;
+                //weight each interval by its share of a second, so the average tracks about the last second
+                double weight = Math.min(1.0, interval / 1e9);
+                averageIntervalNanos = averageIntervalNanos == 0 ? interval : averageIntervalNanos + weight * (interval - averageIntervalNanos);
+            }
+            lastFrameNanos = now;
+        }
+
+        private synchronized double framesPerSecond() {
+            return averageIntervalNanos == 0 ? 0 : 1e9 / averageIntervalNanos;
+        }
+    }
+
+    /**
+     * @param securityService Service that classifies frames and receives the combined verdict
+     * @param workerCount Number of frames classified at the same time
+     */
+    public CameraIngestionService(SecurityService securityService, int workerCount) {
+        if(workerCount <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive");
+        }
+        this.securityService = securityService;
+        for(int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "camera-worker-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Hands in the newest frame from a camera. Never blocks; a frame still waiting from the same
+     * camera is discarded.
+     * @param cameraId Name of the camera, registered on its first frame
+     * @param frame Picture from the camera
+     */
+    public void submitFrame(String cameraId, BufferedImage frame) {
+        if(closed) {
+            throw new IllegalStateException("Camera ingestion has been closed");
+        }
+        Camera camera = cameras.computeIfAbsent(cameraId, Camera::new);
+        long now = System.nanoTime();
+        camera.framesReceived.incrementAndGet();
+        camera.recordArrival(now);
+        if(camera.pending.getAndSet(new Frame(frame, now)) != null) {
+            camera.framesDropped.incrementAndGet();
+        }
+        if(camera.scheduled.compareAndSet(false, true)) {
+            readyCameras.add(camera);
+        }
+    }
+
+    /**
+     * Forgets a camera. A frame of it being classified right now still counts towards the verdict.
+     */
+    public void removeCamera(String cameraId) {
+        Camera camera = cameras.remove(cameraId);
+        if(camera == null) {
+            return;
+        }
+        camera.pending.set(null);
+        synchronized(verdictLock) {
+            if(camera.catDetected) {
+                camera.catDetected = false;
+                camerasSeeingCat--;
+                securityService.catDetected(camerasSeeingCat > 0);
+            }
+        }
+    }
+
+    public CameraStats getCameraStats(String cameraId) {
+        Camera camera = cameras.get(cameraId);
+        return camera == null ? null : stats(camera);
+    }
+
+    public List<CameraStats> getCameraStats() {
+        List<CameraStats> stats = new ArrayList<>();
+        cameras.values().forEach(camera -> stats.add(stats(camera)));
+        return stats;
+    }
+
+    /**
+     * Number of cameras with a frame waiting for a worker.
+     */
+    public int getQueueDepth() {
+        return readyCameras.size();
+    }
+
+    /**
+     * Stops the workers. Frames still waiting are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.forEach(Thread::interrupt);
+        readyCameras.clear();
+    }
+
+    private CameraStats stats(Camera camera) {
+        boolean catDetected;
+        synchronized(verdictLock) {
+            catDetected = camera.catDetected;
+        }
+        return new CameraStats(camera.cameraId, camera.framesReceived.get(), camera.framesClassified.get(),
+                camera.framesDropped.get(), camera.framesPerSecond(), camera.lastQueueLatencyNanos,
+                camera.maxQueueLatencyNanos.get(), catDetected);
+    }
+
+    private void work() {
+        while(!closed) {
+            Camera camera;
+            try {
+                camera = readyCameras.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Frame frame = camera.pending.getAndSet(null);
+            if(frame != null) {
+                classify(camera, frame);
+            }
+            //back to the end of the queue if another frame arrived in the meantime
+            camera.scheduled.set(false);
+            if(camera.pending.get() != null && !closed && camera.scheduled.compareAndSet(false, true)) {
+                readyCameras.add(camera);
+            }
+        }
+    }
+
+    private void classify(Camera camera, Frame frame) {
+        long latency = System.nanoTime() - frame.receivedNanos();
+        camera.lastQueueLatencyNanos = latency;
+        camera.maxQueueLatencyNanos.accumulateAndGet(latency, Math::max);
+        boolean cat;
+        try {
+            cat = securityService.imageContainsCat(frame.image());
+        } catch (RuntimeException e) {
+            log.error("Unable to classify frame from camera {}", camera.cameraId, e);
+            return;
+        }
+        synchronized(verdictLock) {
+            if(cameras.get(camera.cameraId) == camera) {
+                if(cat != camera.catDetected) {
+                    camera.catDetected = cat;
+                    camerasSeeingCat += cat ? 1 : -1;
+                }
+                securityService.catDetected(camerasSeeingCat > 0);
+            }
+        }
+        camera.framesClassified.incrementAndGet();
+    }
+}
@@ -0,0 +1,337 @@
+package com.udacity.security.service;
+
+import com.udacity.image.interfaces.ImageService;
+import com.udacity.security.application.StatusListener;
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.SecurityRepository;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorActivation;
+import com.udacity.security.data.SensorType;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SecurityService that can be driven by many sensor-ingest threads at once without a global lock.
+ *
+ * The arming status, alarm status and number of active sensors are packed into a single long and
+ * every transition is applied with compare-and-set, so a decision is always made against one
+ * consistent snapshot of all three. A sensor's active flag is swapped, and its transition applied,
+ * while holding that sensor's entry in the active sensor map, so events for the same sensor take
+ * effect in one order for both and events for different sensors never wait for each other.
+ *
+ * The repository is written by whichever thread finds it out of date, one thread at a time, and
+ * always with the latest state, so concurrent transitions can never leave a stale alarm status
+ * behind in storage. Listeners receive every alarm transition, but transitions made on different
+ * threads may reach them in either order. The repository must tolerate concurrent sensor updates.
+ */
+public class ConcurrentSecurityService extends SecurityService {
+
+    //state word layout: alarm status in bits 0-1, arming status in bits 2-3, active count above
+    private static final int ARMING_SHIFT = 2;
+    private static final int COUNT_SHIFT = 4;
+    private static final long STATUS_MASK = 0b11;
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    private final SecurityRepository securityRepository;
+    private final AtomicLong state;
+    private final Map<UUID, Sensor> activeSensors = new ConcurrentHashMap<>();
+    private final AtomicIntegerArray activeByType = new AtomicIntegerArray(SensorType.values().length);
+
+    //drain counter for repository writes, plus the last state written, touched only by the drainer
+    private final AtomicInteger pendingPersists = new AtomicInteger();
+    private long persistedState;
+
+    public ConcurrentSecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        super(securityRepository, imageService);
+        this.securityRepository = securityRepository;
+        for(Sensor sensor : securityRepository.getSensors()) {
+            if(sensor.getActive()) {
+                activeSensors.put(sensor.getSensorId(), sensor);
+                activeByType.incrementAndGet(sensor.getSensorType().ordinal());
+            }
+        }
+        long initial = pack(securityRepository.getAlarmStatus(), securityRepository.getArmingStatus(), activeSensors.size());
+        state = new AtomicLong(initial);
+        persistedState = initial;
+    }
+
+    @Override
+    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        SecurityMetrics metrics = getMetrics();
+        long eventStart = metrics.startTimer();
+        Swap swap = swapActive(sensor, active, true);
+
+        if(swap.wasActive() || active) {
+            long persistStart = metrics.startTimer();
+            securityRepository.updateSensor(sensor);
+            metrics.recordRepositoryPersistence(persistStart);
+        }
+        if(published(swap.from(), swap.to())) {
+            metrics.recordSensorEventToNotify(eventStart);
+        }
+    }
+
+    /**
+     * Applies the batch one compare-and-set per change, so it interleaves correctly with other
+     * threads, but persists the changed sensors and announces the sensor change only once. The
+     * alarm transitions the batch made itself are announced afterwards, in order; transitions made
+     * by other threads in the meantime are left to those threads.
+     */
+    @Override
+    public void changeSensorActivationStatus(List<SensorActivation> changes) {
+        SecurityMetrics metrics = getMetrics();
+        long eventStart = metrics.startTimer();
+        Map<UUID, Sensor> changedSensors = new LinkedHashMap<>();
+        //from and to state words of this batch's own alarm transitions
+        List<long[]> transitions = new ArrayList<>();
+        for(SensorActivation change : changes) {
+            Sensor sensor = securityRepository.getSensor(change.sensorId());
+            if(sensor == null) {
+                continue;
+            }
+            Swap swap = swapActive(sensor, change.active(), true);
+            if(alarmOf(swap.from()) != alarmOf(swap.to())) {
+                transitions.add(new long[] {swap.from(), swap.to()});
+            }
+            if(swap.wasActive() != change.active()) {
+                changedSensors.put(sensor.getSensorId(), sensor);
+            }
+        }
+        if(!changedSensors.isEmpty()) {
+            long persistStart = metrics.startTimer();
+            securityRepository.updateSensors(changedSensors.values());
+            metrics.recordRepositoryPersistence(persistStart);
+        }
+        boolean notified = false;
+        for(long[] transition : transitions) {
+            notified |= published(transition[0], transition[1]);
+        }
+        if(notified) {
+            metrics.recordSensorEventToNotify(eventStart);
+        }
+        if(!changedSensors.isEmpty()) {
+            getStatusListeners().forEach(StatusListener::sensorStatusChanged);
+        }
+    }
+
+    /**
+     * Same as {@link #processImage(BufferedImage)}, but returns as soon as the image has been handed
+     * off. The verdict is applied on the thread that completes the analysis, which this class allows.
+     * @param currentCameraImage
+     * @return Future completed with true if the image contains a cat, once the alarm status has been updated
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        return processImageAsync(currentCameraImage, Runnable::run);
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        if(armingStatus != ArmingStatus.DISARMED) {
+            //switching sensors off when arming leaves the alarm status alone, as in SecurityService
+            List<Sensor> deactivated = new ArrayList<>();
+            for(Sensor sensor : activeSensors.values()) {
+                if(swapActive(sensor, false, false).wasActive()) {
+                    deactivated.add(sensor);
+                }
+            }
+            if(!deactivated.isEmpty()) {
+                securityRepository.updateSensors(deactivated);
+            }
+        }
+        long current;
+        long next;
+        do {
+            current = state.get();
+            AlarmStatus alarmStatus = armingStatus == ArmingStatus.DISARMED ? AlarmStatus.NO_ALARM : alarmOf(current);
+            next = pack(alarmStatus, armingStatus, countOf(current));
+        } while(!state.compareAndSet(current, next));
+        published(current, next);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus status) {
+        long current;
+        long next;
+        do {
+            current = state.get();
+            next = pack(status, armingOf(current), countOf(current));
+        } while(!state.compareAndSet(current, next));
+        persist();
+        getStatusListeners().forEach(sl -> sl.notify(status));
+        getMetrics().recordAlarmTransition(status);
+    }
+
+    @Override
+    protected void catDetected(Boolean cat) {
+        long current;
+        long next;
+        do {
+            current = state.get();
+            AlarmStatus alarmStatus = alarmOf(current);
+            if(cat && armingOf(current) == ArmingStatus.ARMED_HOME) {
+                alarmStatus = AlarmStatus.ALARM;
+            } else if(!cat && countOf(current) == 0) {
+                alarmStatus = AlarmStatus.NO_ALARM;
+            }
+            next = pack(alarmStatus, armingOf(current), countOf(current));
+        } while(!state.compareAndSet(current, next));
+        published(current, next);
+        getStatusListeners().forEach(sl -> sl.catDetected(cat));
+    }
+
+    /**
+     * Adds the sensor without changing the alarm status, as SecurityService does. A sensor added
+     * as active is counted, but only later activations can raise an alarm.
+     */
+    @Override
+    public void addSensor(Sensor sensor) {
+        securityRepository.addSensor(sensor);
+        if(sensor.getActive()) {
+            swapActive(sensor, true, false);
+        }
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        swapActive(sensor, false, false);
+        securityRepository.removeSensor(sensor);
+    }
+
+    /**
+     * Not supported: a full scan of the repository cannot be compared with counters that other
+     * threads are changing at the same time. -Dcatpoint.verifyActiveSensors is ignored here too.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void setVerifyActiveSensorCount(boolean verifyActiveSensorCount) {
+        throw new UnsupportedOperationException("ConcurrentSecurityService cannot verify its active sensor count");
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmOf(state.get());
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingOf(state.get());
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return (int) countOf(state.get());
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return activeByType.get(sensorType.ordinal());
+    }
+
+    /**
+     * Sets the sensor's active flag and applies the change to the state word, both while holding
+     * the sensor's map entry, so events for the same sensor are serialized here once for both
+     * steps. Events for different sensors never contend.
+     * @param alarmTransition Whether the alarm status follows the sensor change, or only the count changes
+     */
+    private Swap swapActive(Sensor sensor, boolean active, boolean alarmTransition) {
+        Swap[] swap = new Swap[1];
+        activeSensors.compute(sensor.getSensorId(), (id, previous) -> {
+            boolean wasActive = previous != null;
+            sensor.setActive(active);
+            long delta = 0;
+            if(wasActive != active) {
+                activeByType.addAndGet(sensor.getSensorType().ordinal(), active ? 1 : -1);
+                delta = active ? 1 : -1;
+            }
+            long current;
+            long next;
+            do {
+                current = state.get();
+                AlarmStatus alarmStatus = alarmTransition
+                        ? alarmStatusAfterSensorChange(alarmOf(current), armingOf(current), wasActive, active)
+                        : alarmOf(current);
+                next = pack(alarmStatus, armingOf(current), countOf(current) + delta);
+            } while(!state.compareAndSet(current, next));
+            swap[0] = new Swap(wasActive, current, next);
+            return active ? sensor : null;
+        });
+        return swap[0];
+    }
+
+    /**
+     * Outcome of {@link #swapActive}: whether the sensor was active, and the state word before and after.
+     */
+    private record Swap(boolean wasActive, long from, long to) {
+    }
+
+    /**
+     * Persists and announces a successful transition from one state word to another.
+     * @return True if listeners were told of a new alarm status
+     */
+    private boolean published(long from, long to) {
+        if((from & (STATUS_MASK | STATUS_MASK << ARMING_SHIFT)) == (to & (STATUS_MASK | STATUS_MASK << ARMING_SHIFT))) {
+            return false;
+        }
+        persist();
+        AlarmStatus alarmStatus = alarmOf(to);
+        if(alarmStatus == alarmOf(from)) {
+            return false;
+        }
+        getStatusListeners().forEach(sl -> sl.notify(alarmStatus));
+        getMetrics().recordAlarmTransition(alarmStatus);
+        return true;
+    }
+
+    /**
+     * Writes the latest state to the repository. If another thread is already writing, this only
+     * registers that another pass is needed and returns, so callers never wait on each other.
+     */
+    private void persist() {
+        if(pendingPersists.getAndIncrement() != 0) {
+            return;
+        }
+        SecurityMetrics metrics = getMetrics();
+        int missed = 1;
+        do {
+            long persistStart = metrics.startTimer();
+            long current = state.get();
+            if(alarmOf(current) != alarmOf(persistedState)) {
+                securityRepository.setAlarmStatus(alarmOf(current));
+            }
+            if(armingOf(current) != armingOf(persistedState)) {
+                securityRepository.setArmingStatus(armingOf(current));
+            }
+            persistedState = current;
+            metrics.recordRepositoryPersistence(persistStart);
+            missed = pendingPersists.addAndGet(-missed);
+        } while(missed != 0);
+    }
+
+    private static long pack(AlarmStatus alarmStatus, ArmingStatus armingStatus, long activeCount) {
+        return alarmStatus.ordinal() | (long) armingStatus.ordinal() << ARMING_SHIFT | activeCount << COUNT_SHIFT;
+    }
+
+    private static AlarmStatus alarmOf(long state) {
+        return ALARM_STATUSES[(int) (state & STATUS_MASK)];
+    }
+
+    private static ArmingStatus armingOf(long state) {
+        return ARMING_STATUSES[(int) (state >>> ARMING_SHIFT & STATUS_MASK)];
+    }
+
+    private static long countOf(long state) {
+        return state >> COUNT_SHIFT;
+    }
+}
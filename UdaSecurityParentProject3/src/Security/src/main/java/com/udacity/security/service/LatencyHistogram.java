@@ -0,0 +1,133 @@
+package com.udacity.security.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, in the style of HdrHistogram: every power of
+ * two is split into 16 linear buckets, so any recorded value is reported within about 6% of its
+ * true value across the whole range from nanoseconds to hours, in a fixed 960 counters.
+ *
+ * Recording is a handful of arithmetic operations and two atomic additions, so it is safe to
+ * call from hot paths on many threads at once.
+ */
+public final class LatencyHistogram {
+
+    //values below 2^SUB_BUCKET_BITS are counted exactly; above, each power of two gets HALF_SUB_BUCKETS buckets
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Summary of a histogram at one point in time. Percentiles are the upper bound of the bucket
+     * they fall in, never more than the largest value recorded.
+     */
+    public record Snapshot(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos,
+                           long p999Nanos, long maxNanos) {
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        totalNanos.addAndGet(value);
+        //the maximum rarely changes, so only pay for the update when it does
+        long max = maxNanos.get();
+        while(value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Value at or below which the given fraction of recordings fall.
+     * @param percentile Between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] copy = copyCounts();
+        long count = 0;
+        for(long c : copy) {
+            count += c;
+        }
+        return valueAtPercentile(copy, count, percentile);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = copyCounts();
+        long count = 0;
+        for(long c : copy) {
+            count += c;
+        }
+        double mean = count == 0 ? 0 : (double) totalNanos.get() / count;
+        return new Snapshot(count, mean, valueAtPercentile(copy, count, 50), valueAtPercentile(copy, count, 90),
+                valueAtPercentile(copy, count, 99), valueAtPercentile(copy, count, 99.9), maxNanos.get());
+    }
+
+    /**
+     * Clears every recording. Recordings made while resetting may be partly lost.
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    private long[] copyCounts() {
+        long[] copy = new long[BUCKETS];
+        for(int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    private long valueAtPercentile(long[] copy, long count, double percentile) {
+        if(count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for(int i = 0; i < copy.length; i++) {
+            seen += copy[i];
+            if(seen >= rank) {
+                return Math.min(highestValueIn(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    static int indexOf(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestValueIn(int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long subBucket = index - shift * HALF_SUB_BUCKETS;
+        long highest = ((subBucket + 1) << shift) - 1;
+        //the top bucket's bound does not fit in a long
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
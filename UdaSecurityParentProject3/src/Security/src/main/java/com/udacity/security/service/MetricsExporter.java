@@ -0,0 +1,9 @@
+package com.udacity.security.service;
+
+/**
+ * Receives metrics snapshots, for example to print them or push them to a monitoring system.
+ */
+public interface MetricsExporter {
+
+    void export(MetricsSnapshot snapshot);
+}
@@ -0,0 +1,19 @@
+package com.udacity.security.service;
+
+import com.udacity.security.data.AlarmStatus;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Everything SecurityMetrics has measured, as of one point in time.
+ * @param alarmTransitions Number of times the alarm status was set to each status
+ * @param sensorEventToNotify Time from a sensor change entering the service to listeners being told of the resulting alarm status
+ * @param imageClassification Time the ImageService took per image
+ * @param repositoryPersistence Time the repository took per write on the alarm path
+ */
+public record MetricsSnapshot(Instant takenAt, Map<AlarmStatus, Long> alarmTransitions,
+                              LatencyHistogram.Snapshot sensorEventToNotify,
+                              LatencyHistogram.Snapshot imageClassification,
+                              LatencyHistogram.Snapshot repositoryPersistence) {
+}
@@ -0,0 +1,22 @@
+package com.udacity.security.service;
+
+/**
+ * List of ways a queued status listener can react when its queue is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Discard the oldest queued event to make room for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * Replace the newest queued event with the new one if both are of the same kind, so a slow
+     * listener sees a run of alarm statuses, cat verdicts or sensor changes as its latest value
+     * only. Events are still delivered in the order they happened. Falls back to dropping the
+     * oldest event if the queue is full and nothing can be merged.
+     */
+    COALESCE_LATEST,
+    /**
+     * Make the publishing thread wait for room in the queue.
+     */
+    BLOCK
+}
@@ -0,0 +1,224 @@
+package com.udacity.security.service;
+
+import com.udacity.security.application.StatusListener;
+import com.udacity.security.data.AlarmStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * StatusListener that hands every event to a bounded queue and delivers it to the wrapped
+ * listener on a dedicated thread. The SecurityService only pays for an enqueue, so a slow
+ * listener such as a panel rebuilding its components can never hold up alarm processing.
+ * What happens when the queue is full is decided by the {@link OverflowPolicy}.
+ *
+ * Keeps simple lag metrics: how long events wait in the queue before delivery, and how many
+ * were dropped or merged.
+ */
+public class QueuedStatusListener implements StatusListener, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(QueuedStatusListener.class);
+
+    private enum Kind { ALARM, CAT, SENSORS }
+
+    private record Event(Kind kind, AlarmStatus status, boolean catDetected, long enqueuedNanos) {
+    }
+
+    private final StatusListener delegate;
+    private final OverflowPolicy overflowPolicy;
+
+    //ring buffer guarded by lock
+    private final Event[] events;
+    private int head;
+    private int size;
+    private boolean closed;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private volatile long lastLagNanos;
+
+    private final Thread worker;
+
+    /**
+     * @param delegate Listener that receives the events on the dispatch thread
+     * @param capacity Maximum number of undelivered events
+     * @param overflowPolicy What to do with a new event when the queue is full
+     */
+    public QueuedStatusListener(StatusListener delegate, int capacity, OverflowPolicy overflowPolicy) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        this.delegate = delegate;
+        this.overflowPolicy = overflowPolicy;
+        this.events = new Event[capacity];
+        worker = new Thread(this::drain, "status-listener-" + delegate.getClass().getSimpleName());
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        enqueue(new Event(Kind.ALARM, status, false, System.nanoTime()));
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        enqueue(new Event(Kind.CAT, null, catDetected, System.nanoTime()));
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        enqueue(new Event(Kind.SENSORS, null, false, System.nanoTime()));
+    }
+
+    public StatusListener getDelegate() {
+        return delegate;
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Time the most recently delivered event spent waiting in the queue.
+     */
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+
+    /**
+     * Longest time any delivered event spent waiting in the queue.
+     */
+    public long getMaxLagNanos() {
+        return maxLagNanos.get();
+    }
+
+    /**
+     * Stops accepting events. Events already queued are still delivered.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Event event) {
+        lock.lock();
+        try {
+            if(closed) {
+                return;
+            }
+            if(overflowPolicy == OverflowPolicy.COALESCE_LATEST && replaceNewest(event)) {
+                coalescedCount.incrementAndGet();
+                return;
+            }
+            if(size == events.length) {
+                if(overflowPolicy == OverflowPolicy.BLOCK) {
+                    while(size == events.length && !closed) {
+                        notFull.awaitUninterruptibly();
+                    }
+                    if(closed) {
+                        return;
+                    }
+                } else {
+                    events[head] = null;
+                    head = (head + 1) % events.length;
+                    size--;
+                    droppedCount.incrementAndGet();
+                }
+            }
+            events[(head + size) % events.length] = event;
+            size++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Swaps the newest queued event for the new one if both are of the same kind. Only the newest
+     * is considered, so merging never moves an event ahead of one queued after it. The queued event
+     * keeps its original enqueue time, so the lag metrics still show how stale the listener is.
+     */
+    private boolean replaceNewest(Event event) {
+        if(size == 0) {
+            return false;
+        }
+        int index = (head + size - 1) % events.length;
+        Event queued = events[index];
+        if(queued.kind() != event.kind()) {
+            return false;
+        }
+        events[index] = new Event(event.kind(), event.status(), event.catDetected(), queued.enqueuedNanos());
+        return true;
+    }
+
+    private void drain() {
+        while(true) {
+            Event event;
+            lock.lock();
+            try {
+                while(size == 0 && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if(size == 0) {
+                    return;
+                }
+                event = events[head];
+                events[head] = null;
+                head = (head + 1) % events.length;
+                size--;
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+            deliver(event);
+        }
+    }
+
+    private void deliver(Event event) {
+        long lag = System.nanoTime() - event.enqueuedNanos();
+        lastLagNanos = lag;
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        try {
+            switch(event.kind()) {
+                case ALARM -> delegate.notify(event.status());
+                case CAT -> delegate.catDetected(event.catDetected());
+                case SENSORS -> delegate.sensorStatusChanged();
+            }
+        } catch (RuntimeException e) {
+            log.error("Status listener {} failed", delegate, e);
+        }
+        deliveredCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,106 @@
+package com.udacity.security.service;
+
+import com.udacity.security.data.AlarmStatus;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms for the alarm path of a SecurityService.
+ *
+ * Timings are taken by calling {@link #startTimer()} before an operation and passing its result
+ * to one of the record methods afterwards. The shared {@link #disabled()} instance, which every
+ * service starts with, never reads the clock and ignores every recording, so instrumented code
+ * costs a predictable branch when metrics are off.
+ */
+public class SecurityMetrics {
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final SecurityMetrics DISABLED = new SecurityMetrics(false);
+
+    private final boolean enabled;
+    private final AtomicLongArray alarmTransitions = new AtomicLongArray(ALARM_STATUSES.length);
+    private final LatencyHistogram sensorEventToNotify = new LatencyHistogram();
+    private final LatencyHistogram imageClassification = new LatencyHistogram();
+    private final LatencyHistogram repositoryPersistence = new LatencyHistogram();
+
+    public SecurityMetrics() {
+        this(true);
+    }
+
+    private SecurityMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Instance that records nothing.
+     */
+    public static SecurityMetrics disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Current time for a later record call, or 0 without reading the clock when disabled.
+     */
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void recordAlarmTransition(AlarmStatus alarmStatus) {
+        if(enabled) {
+            alarmTransitions.incrementAndGet(alarmStatus.ordinal());
+        }
+    }
+
+    public void recordSensorEventToNotify(long startNanos) {
+        if(enabled) {
+            sensorEventToNotify.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public void recordImageClassification(long startNanos) {
+        if(enabled) {
+            imageClassification.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public void recordRepositoryPersistence(long startNanos) {
+        if(enabled) {
+            repositoryPersistence.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<AlarmStatus, Long> transitions = new EnumMap<>(AlarmStatus.class);
+        for(AlarmStatus alarmStatus : ALARM_STATUSES) {
+            transitions.put(alarmStatus, alarmTransitions.get(alarmStatus.ordinal()));
+        }
+        return new MetricsSnapshot(Instant.now(), transitions, sensorEventToNotify.snapshot(),
+                imageClassification.snapshot(), repositoryPersistence.snapshot());
+    }
+
+    /**
+     * Hands a fresh snapshot to the exporter.
+     */
+    public void export(MetricsExporter exporter) {
+        exporter.export(snapshot());
+    }
+
+    /**
+     * Clears every counter and histogram.
+     */
+    public void reset() {
+        for(int i = 0; i < ALARM_STATUSES.length; i++) {
+            alarmTransitions.set(i, 0);
+        }
+        sensorEventToNotify.reset();
+        imageClassification.reset();
+        repositoryPersistence.reset();
+    }
+}
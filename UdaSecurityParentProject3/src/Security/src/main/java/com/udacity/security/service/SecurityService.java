@@ -1,15 +1,28 @@
 package com.udacity.security.service;
 
+import com.udacity.image.interfaces.AsyncImageService;
 import com.udacity.image.interfaces.ImageService;
 import com.udacity.security.application.StatusListener;
 import com.udacity.security.data.AlarmStatus;
 import com.udacity.security.data.ArmingStatus;
 import com.udacity.security.data.SecurityRepository;
 import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorActivation;
+import com.udacity.security.data.SensorType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Service that receives information about changes to the security system. Responsible for
@@ -20,9 +33,21 @@ import java.util.Set;
  */
 public class SecurityService {
 
+    private static final Logger log = LoggerFactory.getLogger(SecurityService.class);
+
     private ImageService imageService;
     private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
+    //listeners can be registered and removed while another thread is notifying them
+    private Set<StatusListener> statusListeners = new CopyOnWriteArraySet<>();
+
+    //built lazily from the repository on first use, then kept up to date by every sensor change
+    private ActiveSensorCounter activeSensorCounter;
+    private boolean verifyActiveSensorCount = Boolean.getBoolean("catpoint.verifyActiveSensors");
+
+    private SecurityMetrics metrics = SecurityMetrics.disabled();
+
+    public static final float DEFAULT_CAT_CONFIDENCE_THRESHOLD = 50.0f;
+    private float catConfidenceThreshold = configuredCatConfidenceThreshold();
 
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
         this.securityRepository = securityRepository;
@@ -38,10 +63,19 @@ public class SecurityService {
         //if system is disarmed, alarm status gets set to No Alarm
         if(armingStatus == ArmingStatus.DISARMED) {
             setAlarmStatus(AlarmStatus.NO_ALARM);
+            securityRepository.setArmingStatus(armingStatus);
         }
         else {
-            //sets all sensors inactive
-            securityRepository.getSensors().forEach(sensor -> sensor.setActive(false));
+            //sets all active sensors inactive, without visiting the ones that already are, and saves them in one write
+            ActiveSensorCounter counter = activeSensorCounter();
+            List<Sensor> deactivated = counter.getActiveSensors();
+            for(Sensor sensor : deactivated) {
+                sensor.setActive(false);
+            }
+            if(!deactivated.isEmpty()) {
+                securityRepository.updateSensors(deactivated);
+            }
+            counter.clear();
             //sets the Arming Status
             securityRepository.setArmingStatus(armingStatus);
         }
@@ -52,7 +86,7 @@ public class SecurityService {
      * the camera currently shows a cat.
      * @param cat True if a cat is detected, otherwise false.
      */
-    private void catDetected(Boolean cat) {
+    protected void catDetected(Boolean cat) {
         //if a cat is detected and Armed Home status is set, set alarm to Alarm status
         if(cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
             setAlarmStatus(AlarmStatus.ALARM);
@@ -72,8 +106,35 @@ public class SecurityService {
         statusListeners.add(statusListener);
     }
 
+    /**
+     * Register the StatusListener behind a bounded queue drained by its own thread, so that a
+     * slow listener never delays alarm processing.
+     * @param statusListener
+     * @param queueCapacity Maximum number of undelivered events for this listener
+     * @param overflowPolicy What to do with new events while the queue is full
+     * @return The queued listener, which exposes lag and drop metrics
+     */
+    public QueuedStatusListener addStatusListener(StatusListener statusListener, int queueCapacity, OverflowPolicy overflowPolicy) {
+        QueuedStatusListener queuedListener = new QueuedStatusListener(statusListener, queueCapacity, overflowPolicy);
+        statusListeners.add(queuedListener);
+        return queuedListener;
+    }
+
+    /**
+     * Remove the StatusListener, including any queued registration of it.
+     * @param statusListener
+     */
     public void removeStatusListener(StatusListener statusListener) {
-        statusListeners.remove(statusListener);
+        statusListeners.removeIf(sl -> {
+            if(sl == statusListener) {
+                return true;
+            }
+            if(sl instanceof QueuedStatusListener queued && queued.getDelegate() == statusListener) {
+                queued.close();
+                return true;
+            }
+            return false;
+        });
     }
 
     /**
@@ -81,31 +142,64 @@ public class SecurityService {
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
+        long persistStart = metrics.startTimer();
         securityRepository.setAlarmStatus(status);
+        metrics.recordRepositoryPersistence(persistStart);
         statusListeners.forEach(sl -> sl.notify(status));
+        metrics.recordAlarmTransition(status);
+    }
+
+    /**
+     * Sets the alarm status in response to a sensor event and records how long the event took to
+     * reach the listeners.
+     */
+    private void setAlarmStatusForSensorEvent(AlarmStatus status, long eventStartNanos) {
+        setAlarmStatus(status);
+        metrics.recordSensorEventToNotify(eventStartNanos);
     }
 
     /**
      * Internal method for updating the alarm status when a sensor has been activated.
      */
-    private void handleSensorActivated() {
+    private void handleSensorActivated(long eventStartNanos) {
         if(securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
             return; //no problem if the system is disarmed
         }
         switch(securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
+            case NO_ALARM -> setAlarmStatusForSensorEvent(AlarmStatus.PENDING_ALARM, eventStartNanos);
+            case PENDING_ALARM -> setAlarmStatusForSensorEvent(AlarmStatus.ALARM, eventStartNanos);
         }
     }
 
     /**
      * Internal method for updating the alarm status when a sensor has been deactivated
      */
-    private void handleSensorDeactivated() {
+    private void handleSensorDeactivated(long eventStartNanos) {
         switch(securityRepository.getAlarmStatus()) {
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.NO_ALARM);
-            case ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            case PENDING_ALARM -> setAlarmStatusForSensorEvent(AlarmStatus.NO_ALARM, eventStartNanos);
+            case ALARM -> setAlarmStatusForSensorEvent(AlarmStatus.PENDING_ALARM, eventStartNanos);
+        }
+    }
+
+    /**
+     * The alarm status that changeSensorActivationStatus moves the system to, as a pure function
+     * of the current state. Lets callers evaluate transitions without going through the repository.
+     * @param alarmStatus Current alarm status
+     * @param armingStatus Current arming status
+     * @param wasActive Whether the sensor was active before the change
+     * @param active Whether the sensor is active after the change
+     */
+    static AlarmStatus alarmStatusAfterSensorChange(AlarmStatus alarmStatus, ArmingStatus armingStatus, boolean wasActive, boolean active) {
+        if(alarmStatus != AlarmStatus.ALARM) {
+            if(active) {
+                if(armingStatus == ArmingStatus.DISARMED) {
+                    return alarmStatus;
+                }
+                return alarmStatus == AlarmStatus.NO_ALARM ? AlarmStatus.PENDING_ALARM : AlarmStatus.ALARM;
+            }
+            return wasActive && alarmStatus == AlarmStatus.PENDING_ALARM ? AlarmStatus.NO_ALARM : alarmStatus;
         }
+        return armingStatus == ArmingStatus.DISARMED ? AlarmStatus.PENDING_ALARM : alarmStatus;
     }
 
     /**
@@ -114,16 +208,17 @@ public class SecurityService {
      * @param active
      */
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        long eventStart = metrics.startTimer();
         if (securityRepository.getAlarmStatus() != AlarmStatus.ALARM) {
             //if sensor is not already active and active/true is selected, go to handleSensorActivated
             if(!sensor.getActive() && active) {
-                handleSensorActivated();
+                handleSensorActivated(eventStart);
             //if sensor is already active and active/true is selected, go to handleSensorActivated
             }else if (sensor.getActive() && active) {
-                handleSensorActivated();
+                handleSensorActivated(eventStart);
             //if sensor is already active and not active/false is selected, go to handleSensorDeactivated
             }else if (sensor.getActive() && !active) {
-                handleSensorDeactivated();
+                handleSensorDeactivated(eventStart);
             //if sensor is not already active and active/false is selected, do nothing
             }else if(!sensor.getActive() && !active) {
                 return;
@@ -131,15 +226,150 @@ public class SecurityService {
         //if system is disarmed and Alarm status is set to Alarm, go to handleSensorDeactivated
         }else if(securityRepository.getArmingStatus() == ArmingStatus.DISARMED &&
                 securityRepository.getAlarmStatus() == AlarmStatus.ALARM){
-                handleSensorDeactivated();
+                handleSensorDeactivated(eventStart);
         }
+            activeSensorCounter().update(sensor, active);
             sensor.setActive(active);
+            long persistStart = metrics.startTimer();
             securityRepository.updateSensor(sensor);
+            metrics.recordRepositoryPersistence(persistStart);
+    }
+
+    /**
+     * Apply a whole batch of sensor activation changes. The changes are evaluated in order with
+     * the same rules as changeSensorActivationStatus, but the changed sensors are persisted with a
+     * single repository call, the alarm status is set at most once to where the batch ends up, and
+     * listeners get one sensorStatusChanged for the whole batch. Unknown sensor ids are ignored.
+     * @param changes Sensor changes in the order they happened
+     */
+    public void changeSensorActivationStatus(List<SensorActivation> changes) {
+        long eventStart = metrics.startTimer();
+        AlarmStatus initialAlarmStatus = securityRepository.getAlarmStatus();
+        ArmingStatus armingStatus = securityRepository.getArmingStatus();
+        ActiveSensorCounter counter = activeSensorCounter();
+        AlarmStatus alarmStatus = initialAlarmStatus;
+        Map<UUID, Sensor> changedSensors = new LinkedHashMap<>();
+        for(SensorActivation change : changes) {
+            Sensor sensor = securityRepository.getSensor(change.sensorId());
+            if(sensor == null) {
+                continue;
+            }
+            boolean wasActive = sensor.getActive();
+            alarmStatus = alarmStatusAfterSensorChange(alarmStatus, armingStatus, wasActive, change.active());
+            if(wasActive != change.active()) {
+                counter.update(sensor, change.active());
+                sensor.setActive(change.active());
+                changedSensors.put(sensor.getSensorId(), sensor);
+            }
+        }
+        if(!changedSensors.isEmpty()) {
+            long persistStart = metrics.startTimer();
+            securityRepository.updateSensors(changedSensors.values());
+            metrics.recordRepositoryPersistence(persistStart);
+        }
+        if(alarmStatus != initialAlarmStatus) {
+            setAlarmStatusForSensorEvent(alarmStatus, eventStart);
+        }
+        if(!changedSensors.isEmpty()) {
+            statusListeners.forEach(StatusListener::sensorStatusChanged);
+        }
     }
 
     //checks if all sensors are inactive
     public boolean allSensorsInactive() {
-        return securityRepository.getSensors().stream().noneMatch((Sensor::getActive));
+        return getActiveSensorCount() == 0;
+    }
+
+    /**
+     * Number of currently active sensors. Maintained incrementally, so this is constant time.
+     */
+    public int getActiveSensorCount() {
+        ActiveSensorCounter counter = activeSensorCounter();
+        if(verifyActiveSensorCount) {
+            counter.verify(securityRepository.getSensors());
+        }
+        return counter.getActiveCount();
+    }
+
+    /**
+     * Number of currently active sensors of the given type.
+     * @param sensorType
+     */
+    public int getActiveSensorCount(SensorType sensorType) {
+        ActiveSensorCounter counter = activeSensorCounter();
+        if(verifyActiveSensorCount) {
+            counter.verify(securityRepository.getSensors());
+        }
+        return counter.getActiveCount(sensorType);
+    }
+
+    /**
+     * Debug mode that cross-checks the active sensor counters against a full scan of the
+     * repository on every read, and throws an IllegalStateException if they disagree. Can also be
+     * switched on with -Dcatpoint.verifyActiveSensors=true.
+     * @param verifyActiveSensorCount
+     */
+    public void setVerifyActiveSensorCount(boolean verifyActiveSensorCount) {
+        this.verifyActiveSensorCount = verifyActiveSensorCount;
+    }
+
+    /**
+     * Starts recording counters and latencies into the given metrics, or stops recording when
+     * given {@link SecurityMetrics#disabled()}.
+     * @param metrics
+     */
+    public void setMetrics(SecurityMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public SecurityMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the confidence the ImageService needs to report a cat, 50% unless changed here or with
+     * -Dcatpoint.catConfidenceThreshold. Applies to images processed from now on.
+     * @param catConfidenceThreshold Minimum confidence from 0 to 100
+     */
+    public void setCatConfidenceThreshold(float catConfidenceThreshold) {
+        if(!(catConfidenceThreshold >= 0 && catConfidenceThreshold <= 100)) {
+            throw new IllegalArgumentException("Confidence threshold must be between 0 and 100");
+        }
+        this.catConfidenceThreshold = catConfidenceThreshold;
+    }
+
+    public float getCatConfidenceThreshold() {
+        return catConfidenceThreshold;
+    }
+
+    /**
+     * Threshold set with -Dcatpoint.catConfidenceThreshold, or the default if it is missing, not a
+     * number or outside 0-100, so a typo in the launch command cannot stop the service starting.
+     */
+    private static float configuredCatConfidenceThreshold() {
+        String value = System.getProperty("catpoint.catConfidenceThreshold");
+        if(value == null) {
+            return DEFAULT_CAT_CONFIDENCE_THRESHOLD;
+        }
+        try {
+            float threshold = Float.parseFloat(value.trim());
+            if(threshold >= 0 && threshold <= 100) {
+                return threshold;
+            }
+        } catch (NumberFormatException e) {
+            //reported below like an out of range value
+        }
+        log.warn("Ignoring catpoint.catConfidenceThreshold={}, expected a number from 0 to 100; using {}",
+                value, DEFAULT_CAT_CONFIDENCE_THRESHOLD);
+        return DEFAULT_CAT_CONFIDENCE_THRESHOLD;
+    }
+
+    private ActiveSensorCounter activeSensorCounter() {
+        if(activeSensorCounter == null) {
+            activeSensorCounter = new ActiveSensorCounter();
+            activeSensorCounter.reset(securityRepository.getSensors());
+        }
+        return activeSensorCounter;
     }
 
     /**
@@ -148,7 +378,55 @@ public class SecurityService {
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        catDetected(imageService.imageContainsCat(currentCameraImage, 50.0f));
+        catDetected(imageContainsCat(currentCameraImage));
+    }
+
+    /**
+     * Same as {@link #processImage(BufferedImage)}, but returns as soon as the image has been handed
+     * off. This class is not thread-safe, so the verdict is applied on the given executor, for
+     * example SwingUtilities::invokeLater to keep every state change on the event thread.
+     * @param currentCameraImage
+     * @param verdictExecutor Executor that runs the alarm status update
+     * @return Future completed with true if the image contains a cat, once the alarm status has been updated
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage, Executor verdictExecutor) {
+        return analyzeImage(currentCameraImage).thenApplyAsync(this::applyVerdict, verdictExecutor);
+    }
+
+    /**
+     * Classifies the image without applying the verdict, for callers that combine verdicts from
+     * several cameras before handing the result to {@link #catDetected(Boolean)}.
+     */
+    boolean imageContainsCat(BufferedImage image) {
+        long classificationStart = metrics.startTimer();
+        boolean cat = imageService.imageContainsCat(image, catConfidenceThreshold);
+        metrics.recordImageClassification(classificationStart);
+        return cat;
+    }
+
+    private CompletableFuture<Boolean> analyzeImage(BufferedImage currentCameraImage) {
+        if(imageService instanceof AsyncImageService asyncImageService) {
+            SecurityMetrics analysisMetrics = metrics;
+            long classificationStart = analysisMetrics.startTimer();
+            return asyncImageService.imageContainsCatAsync(currentCameraImage, catConfidenceThreshold)
+                    .whenComplete((cat, error) -> analysisMetrics.recordImageClassification(classificationStart));
+        }
+        //services without a non-blocking API are run off the caller's thread instead
+        return CompletableFuture.supplyAsync(() -> imageContainsCat(currentCameraImage), ImageAnalysisExecutor.INSTANCE);
+    }
+
+    private Boolean applyVerdict(Boolean cat) {
+        catDetected(cat);
+        return cat;
+    }
+
+    //created on first use only, so services that never analyze images asynchronously start no threads
+    private static class ImageAnalysisExecutor {
+        private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "image-analysis");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public AlarmStatus getAlarmStatus() {
@@ -159,12 +437,25 @@ public class SecurityService {
         return securityRepository.getSensors();
     }
 
+    /**
+     * @return The sensor with the given id, or null if there is no such sensor
+     */
+    public Sensor getSensor(UUID sensorId) {
+        return securityRepository.getSensor(sensorId);
+    }
+
     public void addSensor(Sensor sensor) {
         securityRepository.addSensor(sensor);
+        if(activeSensorCounter != null) {
+            activeSensorCounter.update(sensor, sensor.getActive());
+        }
     }
 
     public void removeSensor(Sensor sensor) {
         securityRepository.removeSensor(sensor);
+        if(activeSensorCounter != null) {
+            activeSensorCounter.remove(sensor);
+        }
     }
 
     public ArmingStatus getArmingStatus() {
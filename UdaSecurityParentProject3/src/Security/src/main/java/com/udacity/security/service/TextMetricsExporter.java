@@ -0,0 +1,43 @@
+package com.udacity.security.service;
+
+import com.udacity.security.data.AlarmStatus;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * Writes metrics snapshots as plain text, one line per counter or histogram.
+ */
+public class TextMetricsExporter implements MetricsExporter {
+
+    private final PrintStream out;
+
+    public TextMetricsExporter(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void export(MetricsSnapshot snapshot) {
+        out.print(format(snapshot));
+        out.flush();
+    }
+
+    public static String format(MetricsSnapshot snapshot) {
+        StringBuilder text = new StringBuilder();
+        text.append("metrics at ").append(snapshot.takenAt()).append(System.lineSeparator());
+        for(Map.Entry<AlarmStatus, Long> transition : snapshot.alarmTransitions().entrySet()) {
+            text.append(String.format("  alarm.transitions.%s count=%d%n", transition.getKey(), transition.getValue()));
+        }
+        appendHistogram(text, "sensor.event_to_notify", snapshot.sensorEventToNotify());
+        appendHistogram(text, "image.classification", snapshot.imageClassification());
+        appendHistogram(text, "repository.persistence", snapshot.repositoryPersistence());
+        return text.toString();
+    }
+
+    private static void appendHistogram(StringBuilder text, String name, LatencyHistogram.Snapshot histogram) {
+        text.append(String.format("  %s count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+                name, histogram.count(), histogram.meanNanos() / 1000.0, histogram.p50Nanos() / 1000.0,
+                histogram.p90Nanos() / 1000.0, histogram.p99Nanos() / 1000.0, histogram.p999Nanos() / 1000.0,
+                histogram.maxNanos() / 1000.0));
+    }
+}
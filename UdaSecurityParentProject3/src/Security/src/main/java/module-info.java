@@ -3,10 +3,13 @@ module Security {
     requires com.miglayout.swing;
     requires java.desktop;
     requires java.prefs;
+    requires jdk.httpserver;
     requires com.google.gson;
     requires com.google.common;
+    requires org.slf4j;
     exports com.udacity.security.application;
     exports com.udacity.security.data;
+    exports com.udacity.security.http;
     exports com.udacity.security.service;
     opens com.udacity.security.data to com.google.gson;
 
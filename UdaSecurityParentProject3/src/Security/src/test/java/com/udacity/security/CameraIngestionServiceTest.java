@@ -0,0 +1,105 @@
+package com.udacity.security;
+
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.MappedSensorTableRepositoryImpl;
+import com.udacity.security.service.CameraIngestionService;
+import com.udacity.security.service.ConcurrentSecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for scheduling frames from several cameras through a CameraIngestionService.
+ */
+public class CameraIngestionServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final BufferedImage catImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    //each classification waits for a permit, so tests decide when workers make progress
+    private final Semaphore classifications = new Semaphore(0);
+    private final CountDownLatch firstClassificationStarted = new CountDownLatch(1);
+
+    private MappedSensorTableRepositoryImpl securityRepository;
+    private ConcurrentSecurityService securityService;
+    private CameraIngestionService cameraIngestionService;
+
+    @BeforeEach
+    void init() {
+        securityRepository = new MappedSensorTableRepositoryImpl(directory);
+        securityService = new ConcurrentSecurityService(securityRepository, (image, threshold) -> {
+            firstClassificationStarted.countDown();
+            classifications.acquireUninterruptibly();
+            return image == catImage;
+        });
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        cameraIngestionService = new CameraIngestionService(securityService, 1);
+    }
+
+    @AfterEach
+    void close() {
+        cameraIngestionService.close();
+        securityRepository.close();
+    }
+
+    //Tests that a busy camera only has its latest frame classified and the rest are counted as dropped
+    @Test
+    @DisplayName("Camera 1")
+    public void framesArrivingWhileWorkerBusy_onlyLatestClassified_restDropped() throws InterruptedException {
+
+        cameraIngestionService.submitFrame("porch", new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        assertTrue(firstClassificationStarted.await(5, TimeUnit.SECONDS));
+        for(int i = 0; i < 5; i++) {
+            cameraIngestionService.submitFrame("garage", new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        }
+        cameraIngestionService.submitFrame("garage", catImage);
+        classifications.release(2);
+
+        awaitClassified("garage", 1);
+        CameraIngestionService.CameraStats garage = cameraIngestionService.getCameraStats("garage");
+        assertEquals(6, garage.framesReceived());
+        assertEquals(5, garage.framesDropped());
+        assertTrue(garage.catDetected());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    //Tests that a camera without a cat does not clear the alarm while another camera still sees one
+    @Test
+    @DisplayName("Camera 2")
+    public void cameraWithoutCat_doesNotClearCatSeenByAnotherCamera() throws InterruptedException {
+
+        cameraIngestionService.submitFrame("porch", catImage);
+        classifications.release();
+        awaitClassified("porch", 1);
+        cameraIngestionService.submitFrame("garage", new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        classifications.release();
+        awaitClassified("garage", 1);
+
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+        cameraIngestionService.removeCamera("porch");
+
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    private void awaitClassified(String cameraId, long frames) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(cameraIngestionService.getCameraStats(cameraId) == null
+                || cameraIngestionService.getCameraStats(cameraId).framesClassified() < frames) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for " + cameraId);
+            Thread.sleep(5);
+        }
+    }
+}
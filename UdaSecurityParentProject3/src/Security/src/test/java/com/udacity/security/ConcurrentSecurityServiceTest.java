@@ -0,0 +1,252 @@
+package com.udacity.security;
+
+import com.udacity.security.application.StatusListener;
+import com.udacity.security.data.*;
+import com.udacity.security.service.ConcurrentSecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests that drive a ConcurrentSecurityService from many threads at once and check that
+ * the packed state stays consistent with the sensors and the repository.
+ */
+public class ConcurrentSecurityServiceTest {
+
+    private static final int THREADS = 8;
+    private static final int EVENTS_PER_THREAD = 20_000;
+    private static final int SENSORS = 64;
+
+    @TempDir
+    Path directory;
+
+    private MappedSensorTableRepositoryImpl securityRepository;
+    private ConcurrentSecurityService securityService;
+    private final List<Sensor> sensors = new ArrayList<>();
+    private final ConcurrentLinkedQueue<AlarmStatus> notifications = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void init() {
+        securityRepository = new MappedSensorTableRepositoryImpl(directory);
+        for(int i = 0; i < SENSORS; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            securityRepository.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        securityService = new ConcurrentSecurityService(securityRepository, (image, threshold) -> false);
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                notifications.add(status);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+    }
+
+    @AfterEach
+    void close() {
+        securityRepository.close();
+    }
+
+    //Tests that a disarmed system never alarms and the active count matches the sensors under contention
+    @Test
+    @DisplayName("Concurrent 1")
+    public void disarmed_concurrentSensorEvents_keepCountExact_andNeverAlarm() throws InterruptedException {
+
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        notifications.clear();
+
+        hammer(EVENTS_PER_THREAD);
+
+        assertTrue(notifications.isEmpty());
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertCountsMatchSensors();
+        assertPersistedStateMatchesService();
+    }
+
+    //Tests that an armed system ends in a state consistent with its sensors and repository
+    @Test
+    @DisplayName("Concurrent 2")
+    public void armed_concurrentSensorEvents_persistLatestState() throws InterruptedException {
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        hammer(EVENTS_PER_THREAD);
+
+        assertCountsMatchSensors();
+        assertEquals(securityService.getAlarmStatus(), securityRepository.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_AWAY, securityRepository.getArmingStatus());
+
+        //re-arming switches every sensor off, after which a cat-free image clears the alarm
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertEquals(0, securityService.getActiveSensorCount());
+        assertTrue(securityService.allSensorsInactive());
+        securityService.processImage(null);
+
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertEquals(AlarmStatus.NO_ALARM, securityRepository.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_HOME, securityRepository.getArmingStatus());
+        assertCountsMatchSensors();
+        assertPersistedStateMatchesService();
+    }
+
+    //Tests that concurrent batches and single events announce the one transition into ALARM exactly once
+    @Test
+    @DisplayName("Concurrent 3")
+    public void armed_concurrentBatchesAndSingleEvents_notifyAlarmOnce() throws InterruptedException {
+
+        for(int round = 0; round < 200; round++) {
+            //re-arming switches every sensor off; ALARM is kept until it is reset
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+            notifications.clear();
+
+            runConcurrently(thread -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for(int i = 0; i < 50; i++) {
+                    if(thread % 2 == 0) {
+                        List<SensorActivation> batch = new ArrayList<>();
+                        for(int j = 0; j < 4; j++) {
+                            batch.add(new SensorActivation(sensors.get(random.nextInt(SENSORS)).getSensorId(), random.nextBoolean()));
+                        }
+                        securityService.changeSensorActivationStatus(batch);
+                    } else {
+                        securityService.changeSensorActivationStatus(sensors.get(random.nextInt(SENSORS)), random.nextBoolean());
+                    }
+                }
+            });
+
+            //an armed system cannot leave ALARM through sensor events, so it is entered at most once
+            long alarms = notifications.stream().filter(status -> status == AlarmStatus.ALARM).count();
+            long expected = securityService.getAlarmStatus() == AlarmStatus.ALARM ? 1 : 0;
+            assertEquals(expected, alarms, "round " + round + ": " + notifications);
+            assertAlarmMatchesActiveSensors("round " + round);
+        }
+        assertCountsMatchSensors();
+    }
+
+    //Tests that racing events for one sensor move the alarm in the same order as they change the sensor
+    @Test
+    @DisplayName("Concurrent 4")
+    public void armed_racingEventsForOneSensor_alarmMatchesSensor() throws InterruptedException {
+        Sensor sensor = sensors.get(0);
+        for(int round = 0; round < 500; round++) {
+            securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+
+            //half the threads switch the sensor on and half off; in any serial order NO_ALARM means off and PENDING_ALARM on
+            runConcurrently(thread -> securityService.changeSensorActivationStatus(sensor, thread % 2 == 0));
+
+            assertAlarmMatchesActiveSensors("round " + round);
+        }
+        assertCountsMatchSensors();
+    }
+
+    //Tests that adding an active sensor counts it without raising the alarm, as SecurityService does
+    @Test
+    @DisplayName("Concurrent 5")
+    public void armed_addActiveSensor_countedWithoutAlarm() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        Sensor added = new Sensor("Added", SensorType.DOOR);
+        added.setActive(true);
+        securityService.addSensor(added);
+        sensors.add(added);
+
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertEquals(1, securityService.getActiveSensorCount());
+        assertCountsMatchSensors();
+        assertThrows(UnsupportedOperationException.class, () -> securityService.setVerifyActiveSensorCount(true));
+    }
+
+    //sensor events alone, once armed from NO_ALARM, leave PENDING_ALARM exactly when one sensor is on, until ALARM
+    private void assertAlarmMatchesActiveSensors(String message) {
+        AlarmStatus alarmStatus = securityService.getAlarmStatus();
+        long active = sensors.stream().filter(Sensor::getActive).count();
+        assertEquals(active, securityService.getActiveSensorCount(), message);
+        if(alarmStatus != AlarmStatus.ALARM) {
+            assertEquals(alarmStatus == AlarmStatus.PENDING_ALARM ? 1 : 0, active, message + ": " + alarmStatus);
+        }
+    }
+
+    private void hammer(int eventsPerThread) throws InterruptedException {
+        runConcurrently(thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for(int i = 0; i < eventsPerThread; i++) {
+                Sensor sensor = sensors.get(random.nextInt(SENSORS));
+                securityService.changeSensorActivationStatus(sensor, random.nextBoolean());
+            }
+        });
+    }
+
+    private void runConcurrently(IntConsumer work) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        for(int t = 0; t < THREADS; t++) {
+            int index = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    work.accept(index);
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.isEmpty(), () -> "Worker failed: " + errors.peek());
+    }
+
+    private void assertCountsMatchSensors() {
+        long active = sensors.stream().filter(Sensor::getActive).count();
+        assertEquals(active, securityService.getActiveSensorCount());
+        for(SensorType type : SensorType.values()) {
+            long activeOfType = sensors.stream().filter(s -> s.getSensorType() == type && s.getActive()).count();
+            assertEquals(activeOfType, securityService.getActiveSensorCount(type));
+        }
+        assertEquals(active, securityRepository.getSensors().stream().filter(Sensor::getActive).count());
+    }
+
+    //the sensors above are the objects the service mutates, so also check what actually reached the table
+    private void assertPersistedStateMatchesService() {
+        securityRepository.close();
+        securityRepository = new MappedSensorTableRepositoryImpl(directory);
+        assertEquals(SENSORS, securityRepository.getSensors().size());
+        for(Sensor sensor : sensors) {
+            assertEquals(sensor.getActive(), securityRepository.getSensor(sensor.getSensorId()).getActive(), sensor.getName());
+        }
+        Set<Sensor> persisted = securityRepository.getSensors();
+        assertEquals(securityService.getActiveSensorCount(), persisted.stream().filter(Sensor::getActive).count());
+        for(SensorType type : SensorType.values()) {
+            long activeOfType = persisted.stream().filter(s -> s.getSensorType() == type && s.getActive()).count();
+            assertEquals(securityService.getActiveSensorCount(type), activeOfType);
+        }
+        assertEquals(securityService.getAlarmStatus(), securityRepository.getAlarmStatus());
+        assertEquals(securityService.getArmingStatus(), securityRepository.getArmingStatus());
+    }
+}
@@ -0,0 +1,144 @@
+package com.udacity.security;
+
+import com.udacity.security.data.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    //Tests that sensors, alarm and arming status survive a restart by replaying the journal
+    @Test
+    @DisplayName("Journal 1")
+    public void journalReplay_restoresState() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            door.setActive(true);
+            repository.updateSensor(door);
+            repository.removeSensor(window);
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(1, repository.getSensors().size());
+            Sensor restored = repository.getSensors().iterator().next();
+            assertEquals(door.getSensorId(), restored.getSensorId());
+            assertEquals("Door", restored.getName());
+            assertTrue(restored.getActive());
+            assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+            assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        }
+    }
+
+    //Tests that compaction keeps the sensor state and the alarm history, and shrinks the journal
+    @Test
+    @DisplayName("Journal 2")
+    public void compaction_keepsStateAndAlarmHistory() throws IOException {
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory, 50, false)) {
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            for(int i = 0; i < 120; i++) {
+                Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+                repository.addSensor(sensor);
+                sensor.setActive(i % 2 == 0);
+                repository.updateSensor(sensor);
+            }
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+        }
+        assertTrue(Files.exists(directory.resolve("snapshot.bin")));
+
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory, 50, false)) {
+            assertEquals(120, repository.getSensors().size());
+            assertEquals(60, repository.getSensors().stream().filter(Sensor::getActive).count());
+            List<JournalSecurityRepositoryImpl.AlarmTransition> history = repository.getAlarmHistory();
+            assertEquals(List.of(AlarmStatus.PENDING_ALARM, AlarmStatus.ALARM),
+                    history.stream().map(JournalSecurityRepositoryImpl.AlarmTransition::alarmStatus).toList());
+        }
+    }
+
+    //Tests that a record torn by a crash is discarded instead of corrupting the replay
+    @Test
+    @DisplayName("Journal 3")
+    public void tornRecord_isDiscardedOnReplay() throws IOException {
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.addSensor(new Sensor("Door", SensorType.DOOR));
+            repository.addSensor(new Sensor("Window", SensorType.WINDOW));
+        }
+        Path journal = directory.resolve("journal.bin");
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(1, repository.getSensors().size());
+            repository.addSensor(new Sensor("Motion", SensorType.MOTION));
+        }
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(2, repository.getSensors().size());
+        }
+    }
+
+    //Tests that only the most recent alarm transitions are kept in memory, at runtime and after replay
+    @Test
+    @DisplayName("Journal 4")
+    public void alarmHistory_keepsOnlyMostRecentTransitions() {
+        List<AlarmStatus> transitions = List.of(AlarmStatus.PENDING_ALARM, AlarmStatus.ALARM, AlarmStatus.NO_ALARM,
+                AlarmStatus.PENDING_ALARM, AlarmStatus.NO_ALARM);
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory, 50, false, 3)) {
+            transitions.forEach(repository::setAlarmStatus);
+            assertEquals(transitions.subList(2, 5),
+                    repository.getAlarmHistory().stream().map(JournalSecurityRepositoryImpl.AlarmTransition::alarmStatus).toList());
+        }
+
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory, 50, false, 3)) {
+            assertEquals(transitions.subList(2, 5),
+                    repository.getAlarmHistory().stream().map(JournalSecurityRepositoryImpl.AlarmTransition::alarmStatus).toList());
+            assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        }
+    }
+
+    //Tests that compaction drops arming records and alarm records beyond the history, so the journal stops growing
+    @Test
+    @DisplayName("Journal 5")
+    public void compaction_keepsLatestStatusAndRecentHistoryOnly() throws IOException {
+        AlarmStatus[] alarmStatuses = AlarmStatus.values();
+        ArmingStatus[] armingStatuses = ArmingStatus.values();
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Path journal = directory.resolve("journal.bin");
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory, 10, false, 3)) {
+            repository.addSensor(door);
+            for(int i = 0; i < 1_000; i++) {
+                repository.setArmingStatus(armingStatuses[i % armingStatuses.length]);
+                repository.setAlarmStatus(alarmStatuses[i % alarmStatuses.length]);
+                door.setActive(i % 2 == 0);
+                repository.updateSensor(door);
+            }
+            //three alarm records and one arming record, plus at most the sensor and status records since the last compaction
+            assertTrue(Files.size(journal) < 40 * 50, "journal is " + Files.size(journal) + " bytes");
+        }
+
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory, 10, false, 3)) {
+            assertEquals(armingStatuses[999 % armingStatuses.length], repository.getArmingStatus());
+            assertEquals(alarmStatuses[999 % alarmStatuses.length], repository.getAlarmStatus());
+            assertEquals(List.of(alarmStatuses[997 % alarmStatuses.length], alarmStatuses[998 % alarmStatuses.length], alarmStatuses[999 % alarmStatuses.length]),
+                    repository.getAlarmHistory().stream().map(JournalSecurityRepositoryImpl.AlarmTransition::alarmStatus).toList());
+            assertFalse(repository.getSensor(door.getSensorId()).getActive());
+        }
+    }
+}
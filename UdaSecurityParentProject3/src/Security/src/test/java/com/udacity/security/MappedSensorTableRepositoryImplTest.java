@@ -0,0 +1,140 @@
+package com.udacity.security;
+
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.MappedSensorTableRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the memory-mapped sensor table.
+ */
+public class MappedSensorTableRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    //Tests that sensors, their active flags and the system status survive closing and reopening the table
+    @Test
+    @DisplayName("Mapped 1")
+    public void reopen_restoresSensorsAndStatus() {
+        MappedSensorTableRepositoryImpl repository = new MappedSensorTableRepositoryImpl(directory);
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor window = new Sensor("Kitchen window", SensorType.WINDOW);
+        Sensor motion = new Sensor("Hallway", SensorType.MOTION);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        repository.addSensor(motion);
+        window.setActive(true);
+        repository.updateSensor(window);
+        repository.removeSensor(motion);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.close();
+
+        MappedSensorTableRepositoryImpl reopened = new MappedSensorTableRepositoryImpl(directory);
+        assertEquals(2, reopened.getSensors().size());
+        assertEquals(AlarmStatus.PENDING_ALARM, reopened.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_AWAY, reopened.getArmingStatus());
+        Sensor reopenedWindow = reopened.getSensor(window.getSensorId());
+        assertEquals("Kitchen window", reopenedWindow.getName());
+        assertEquals(SensorType.WINDOW, reopenedWindow.getSensorType());
+        assertTrue(reopenedWindow.getActive());
+        assertFalse(reopened.getSensor(door.getSensorId()).getActive());
+        assertNull(reopened.getSensor(motion.getSensorId()));
+
+        //the freed slot is reused before the table grows
+        Sensor garage = new Sensor("Garage", SensorType.DOOR);
+        reopened.addSensor(garage);
+        assertEquals(2, reopened.getSlot(garage));
+        reopened.close();
+    }
+
+    //Tests that the table doubles when full, keeping every record, and reopens at the grown size
+    @Test
+    @DisplayName("Mapped 2")
+    public void addSensor_beyondCapacity_growsTable() throws IOException {
+        MappedSensorTableRepositoryImpl repository = new MappedSensorTableRepositoryImpl(directory, 2);
+        long initialSize = Files.size(directory.resolve("sensors.table"));
+        List<Sensor> added = new ArrayList<>();
+        for(int i = 0; i < 9; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+            sensor.setActive(i % 2 == 0);
+            repository.addSensor(sensor);
+            added.add(sensor);
+        }
+        for(int i = 0; i < added.size(); i++) {
+            assertEquals(i, repository.getSlot(added.get(i)));
+        }
+        repository.close();
+        assertTrue(Files.size(directory.resolve("sensors.table")) > initialSize);
+
+        MappedSensorTableRepositoryImpl reopened = new MappedSensorTableRepositoryImpl(directory, 2);
+        assertEquals(9, reopened.getSensors().size());
+        for(Sensor sensor : added) {
+            Sensor stored = reopened.getSensor(sensor.getSensorId());
+            assertEquals(sensor.getName(), stored.getName());
+            assertEquals(sensor.getActive(), stored.getActive());
+        }
+        reopened.close();
+    }
+
+    //Tests that renames and removals leave only the current names in the side file after reopening
+    @Test
+    @DisplayName("Mapped 3")
+    public void reopen_rewritesNameFile() throws IOException {
+        Path namesFile = directory.resolve("sensors.names");
+        MappedSensorTableRepositoryImpl repository = new MappedSensorTableRepositoryImpl(directory);
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor removed = new Sensor("Removed", SensorType.WINDOW);
+        repository.addSensor(door);
+        repository.addSensor(removed);
+        for(int i = 0; i < 20; i++) {
+            door.setName("Door " + i);
+            repository.updateSensor(door);
+        }
+        repository.removeSensor(removed);
+        long appendedSize = Files.size(namesFile);
+        repository.close();
+
+        MappedSensorTableRepositoryImpl reopened = new MappedSensorTableRepositoryImpl(directory);
+        assertEquals("Door 19", reopened.getSensor(door.getSensorId()).getName());
+        //one entry: slot, length and the name
+        assertEquals(Integer.BYTES * 2 + "Door 19".length(), Files.size(namesFile));
+        assertTrue(Files.size(namesFile) < appendedSize);
+        reopened.close();
+    }
+
+    //Tests that sensors come back sorted by name, including after one is renamed in place
+    @Test
+    @DisplayName("Mapped 4")
+    public void getSensors_sortedByName() {
+        MappedSensorTableRepositoryImpl repository = new MappedSensorTableRepositoryImpl(directory);
+        Sensor charlie = new Sensor("Charlie", SensorType.DOOR);
+        repository.addSensor(charlie);
+        repository.addSensor(new Sensor("Alpha", SensorType.WINDOW));
+        repository.addSensor(new Sensor("Bravo", SensorType.MOTION));
+        assertEquals(List.of("Alpha", "Bravo", "Charlie"), names(repository));
+
+        charlie.setName("Aardvark");
+        repository.updateSensor(charlie);
+        assertEquals(List.of("Aardvark", "Alpha", "Bravo"), names(repository));
+        assertEquals(3, repository.getSensors().size());
+        repository.close();
+    }
+
+    private static List<String> names(MappedSensorTableRepositoryImpl repository) {
+        return repository.getSensors().stream().map(Sensor::getName).toList();
+    }
+}
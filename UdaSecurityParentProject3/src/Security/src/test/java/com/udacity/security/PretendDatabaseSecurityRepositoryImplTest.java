@@ -0,0 +1,179 @@
+package com.udacity.security;
+
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.PersistenceMode;
+import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the write-behind persistence mode.
+ */
+public class PretendDatabaseSecurityRepositoryImplTest {
+
+    private Preferences prefs;
+
+    @BeforeEach
+    void init() {
+        prefs = Preferences.userRoot().node("com/udacity/security/test/" + UUID.randomUUID());
+    }
+
+    @AfterEach
+    void close() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    //Tests that a burst of changes is written as a single snapshot once the repository is quiet
+    @Test
+    @DisplayName("Pretend 1")
+    public void writeBehind_burstOfChanges_coalescedIntoOneSnapshot() throws InterruptedException {
+        PretendDatabaseSecurityRepositoryImpl repository = openRepository(PersistenceMode.WRITE_BEHIND,
+                Duration.ofMillis(200), Duration.ofSeconds(10));
+        for(int i = 0; i < 50; i++) {
+            repository.addSensor(new Sensor("Sensor " + i, SensorType.MOTION));
+        }
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        assertEquals(0, repository.getSnapshotsWritten());
+        assertNull(prefs.get("ALARM_STATUS", null));
+
+        awaitSnapshots(repository, 1, Duration.ofSeconds(5));
+        Thread.sleep(400);
+        assertEquals(1, repository.getSnapshotsWritten());
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = openRepository(PersistenceMode.WRITE_THROUGH,
+                Duration.ofMillis(200), Duration.ofSeconds(10));
+        assertEquals(50, reloaded.getSensors().size());
+        assertEquals(AlarmStatus.PENDING_ALARM, reloaded.getAlarmStatus());
+        repository.close();
+    }
+
+    //Tests that changes are written within the staleness bound even when the repository never goes quiet
+    @Test
+    @DisplayName("Pretend 2")
+    public void writeBehind_continuousChanges_writtenWithinStalenessBound() throws InterruptedException {
+        PretendDatabaseSecurityRepositoryImpl repository = openRepository(PersistenceMode.WRITE_BEHIND,
+                Duration.ofMillis(200), Duration.ofMillis(400));
+        long end = System.nanoTime() + Duration.ofMillis(1500).toNanos();
+        int i = 0;
+        while(System.nanoTime() < end) {
+            repository.addSensor(new Sensor("Sensor " + i++, SensorType.DOOR));
+            Thread.sleep(20);
+        }
+        //changes never paused for the 200 ms flush interval, so every write came from the 400 ms bound
+        assertTrue(repository.getSnapshotsWritten() >= 2, "snapshots written: " + repository.getSnapshotsWritten());
+        repository.close();
+    }
+
+    //Tests that closing writes pending changes immediately and later changes are written through
+    @Test
+    @DisplayName("Pretend 3")
+    public void writeBehind_close_flushesPendingChanges() {
+        PretendDatabaseSecurityRepositoryImpl repository = openRepository(PersistenceMode.WRITE_BEHIND,
+                Duration.ofSeconds(30), Duration.ofSeconds(60));
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        repository.addSensor(door);
+        assertEquals(0, repository.getSnapshotsWritten());
+
+        repository.close();
+        assertEquals(1, repository.getSnapshotsWritten());
+        repository.addSensor(new Sensor("Garage", SensorType.WINDOW));
+        assertEquals(2, repository.getSnapshotsWritten());
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = openRepository(PersistenceMode.WRITE_THROUGH,
+                Duration.ofMillis(200), Duration.ofSeconds(2));
+        assertEquals(2, reloaded.getSensors().size());
+        assertNotNull(reloaded.getSensor(door.getSensorId()));
+    }
+
+    //Tests that a sensor list over the preferences value limit is chunked, reloaded, and its old chunks removed
+    @Test
+    @DisplayName("Pretend 4")
+    public void largeSensorList_chunkedAndStaleChunksRemoved() throws BackingStoreException {
+        PretendDatabaseSecurityRepositoryImpl repository = openRepository(PersistenceMode.WRITE_THROUGH,
+                Duration.ofMillis(200), Duration.ofSeconds(2));
+        List<Sensor> added = new ArrayList<>();
+        for(int i = 0; i < 200; i++) {
+            Sensor sensor = new Sensor("Sensor \uD83D\uDC08 " + i + " " + "x".repeat(60), SensorType.MOTION);
+            repository.addSensor(sensor);
+            added.add(sensor);
+        }
+        String firstGeneration = prefs.get("SENSOR_PARTS", null);
+        assertNotNull(firstGeneration);
+        assertNull(prefs.get("SENSORS", null));
+        assertTrue(chunkKeys().size() > 1, "chunks: " + chunkKeys());
+
+        //every rewrite switches to a new generation and drops the previous one
+        repository.removeSensor(added.remove(0));
+        assertNotEquals(firstGeneration, prefs.get("SENSOR_PARTS", null));
+        String generationPrefix = "SENSORS." + prefs.get("SENSOR_PARTS", null).split(":")[0] + ".";
+        assertTrue(chunkKeys().stream().allMatch(key -> key.startsWith(generationPrefix)), "chunks: " + chunkKeys());
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = openRepository(PersistenceMode.WRITE_THROUGH,
+                Duration.ofMillis(200), Duration.ofSeconds(2));
+        assertEquals(199, reloaded.getSensors().size());
+        for(Sensor sensor : added) {
+            assertEquals(sensor.getName(), reloaded.getSensor(sensor.getSensorId()).getName());
+        }
+
+        //shrinking below the limit goes back to a single value with no chunks left behind
+        for(Sensor sensor : added.subList(1, added.size())) {
+            reloaded.removeSensor(sensor);
+        }
+        assertNotNull(prefs.get("SENSORS", null));
+        assertNull(prefs.get("SENSOR_PARTS", null));
+        assertTrue(chunkKeys().isEmpty(), "chunks: " + chunkKeys());
+        assertEquals(1, openRepository(PersistenceMode.WRITE_THROUGH, Duration.ofMillis(200), Duration.ofSeconds(2)).getSensors().size());
+    }
+
+    //Tests that chunks written by an interrupted rewrite are ignored on load and cleaned up by the next write
+    @Test
+    @DisplayName("Pretend 5")
+    public void interruptedChunkedWrite_previousListStillLoaded() throws BackingStoreException {
+        PretendDatabaseSecurityRepositoryImpl repository = openRepository(PersistenceMode.WRITE_THROUGH,
+                Duration.ofMillis(200), Duration.ofSeconds(2));
+        for(int i = 0; i < 200; i++) {
+            repository.addSensor(new Sensor("Sensor " + i + " " + "x".repeat(60), SensorType.DOOR));
+        }
+        long generation = Long.parseLong(prefs.get("SENSOR_PARTS", null).split(":")[0]);
+        //a crash after writing the next generation's first chunk, before switching to it
+        prefs.put("SENSORS." + (generation + 1) + ".0", "garbage");
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = openRepository(PersistenceMode.WRITE_THROUGH,
+                Duration.ofMillis(200), Duration.ofSeconds(2));
+        assertEquals(200, reloaded.getSensors().size());
+        reloaded.addSensor(new Sensor("Garage", SensorType.WINDOW));
+        String generationPrefix = "SENSORS." + prefs.get("SENSOR_PARTS", null).split(":")[0] + ".";
+        assertTrue(chunkKeys().stream().allMatch(key -> key.startsWith(generationPrefix)), "chunks: " + chunkKeys());
+        assertEquals(201, openRepository(PersistenceMode.WRITE_THROUGH, Duration.ofMillis(200), Duration.ofSeconds(2)).getSensors().size());
+    }
+
+    private List<String> chunkKeys() throws BackingStoreException {
+        return Arrays.stream(prefs.keys()).filter(key -> key.startsWith("SENSORS.")).toList();
+    }
+
+    private PretendDatabaseSecurityRepositoryImpl openRepository(PersistenceMode mode, Duration flushInterval, Duration maxStaleness) {
+        return new PretendDatabaseSecurityRepositoryImpl(prefs, mode, flushInterval, maxStaleness);
+    }
+
+    private static void awaitSnapshots(PretendDatabaseSecurityRepositoryImpl repository, long count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while(repository.getSnapshotsWritten() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, repository.getSnapshotsWritten());
+    }
+}
@@ -0,0 +1,237 @@
+package com.udacity.security;
+
+import com.udacity.image.interfaces.ImageService;
+import com.udacity.security.application.StatusListener;
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.SecurityRepository;
+import com.udacity.security.service.OverflowPolicy;
+import com.udacity.security.service.QueuedStatusListener;
+import com.udacity.security.service.SecurityService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the overflow policies and metrics of the queued status listener.
+ */
+public class QueuedStatusListenerTest {
+
+    //Tests that a full DROP_OLDEST queue discards its oldest event and keeps the rest in order
+    @Test
+    @DisplayName("Queue 1")
+    public void dropOldest_fullQueue_discardsOldestEvent() throws InterruptedException {
+        RecordingListener delegate = new RecordingListener();
+        QueuedStatusListener listener = new QueuedStatusListener(delegate, 2, OverflowPolicy.DROP_OLDEST);
+        delegate.holdFirstEvent(listener);
+
+        listener.notify(AlarmStatus.PENDING_ALARM);
+        listener.catDetected(true);
+        listener.sensorStatusChanged();
+        assertEquals(1, listener.getDroppedCount());
+        assertEquals(2, listener.getQueueDepth());
+
+        delegate.release();
+        delegate.awaitEvents(3);
+        assertEquals(List.of("NO_ALARM", "cat true", "sensors"), delegate.events());
+        listener.close();
+    }
+
+    //Tests that COALESCE_LATEST only merges into the newest queued event, so delivery order is kept
+    @Test
+    @DisplayName("Queue 2")
+    public void coalesceLatest_mergesOnlyIntoNewestEvent() throws InterruptedException {
+        RecordingListener delegate = new RecordingListener();
+        QueuedStatusListener listener = new QueuedStatusListener(delegate, 4, OverflowPolicy.COALESCE_LATEST);
+        delegate.holdFirstEvent(listener);
+
+        listener.notify(AlarmStatus.PENDING_ALARM);
+        listener.catDetected(true);
+        listener.notify(AlarmStatus.ALARM);
+        assertEquals(0, listener.getCoalescedCount());
+        listener.catDetected(false);
+        listener.catDetected(true);
+        assertEquals(1, listener.getCoalescedCount());
+        assertEquals(4, listener.getQueueDepth());
+
+        //full, and the newest event is of another kind, so the oldest is dropped
+        listener.sensorStatusChanged();
+        assertEquals(1, listener.getDroppedCount());
+
+        delegate.release();
+        delegate.awaitEvents(5);
+        assertEquals(List.of("NO_ALARM", "cat true", "ALARM", "cat true", "sensors"), delegate.events());
+        listener.close();
+    }
+
+    //Tests that a BLOCK producer waits for room and its event is delivered once the listener catches up
+    @Test
+    @DisplayName("Queue 3")
+    public void block_fullQueue_producerWaitsForRoom() throws InterruptedException {
+        RecordingListener delegate = new RecordingListener();
+        QueuedStatusListener listener = new QueuedStatusListener(delegate, 1, OverflowPolicy.BLOCK);
+        delegate.holdFirstEvent(listener);
+        listener.notify(AlarmStatus.PENDING_ALARM);
+
+        Thread producer = new Thread(() -> listener.notify(AlarmStatus.ALARM));
+        producer.start();
+        awaitWaiting(producer);
+
+        delegate.release();
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(producer.isAlive());
+        delegate.awaitEvents(3);
+        assertEquals(List.of("NO_ALARM", "PENDING_ALARM", "ALARM"), delegate.events());
+        assertEquals(0, listener.getDroppedCount());
+        listener.close();
+    }
+
+    //Tests that closing the listener releases a BLOCK producer waiting for room
+    @Test
+    @DisplayName("Queue 4")
+    public void block_close_unblocksProducer() throws InterruptedException {
+        RecordingListener delegate = new RecordingListener();
+        QueuedStatusListener listener = new QueuedStatusListener(delegate, 1, OverflowPolicy.BLOCK);
+        delegate.holdFirstEvent(listener);
+        listener.notify(AlarmStatus.PENDING_ALARM);
+
+        Thread producer = new Thread(() -> listener.notify(AlarmStatus.ALARM));
+        producer.start();
+        awaitWaiting(producer);
+
+        listener.close();
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(producer.isAlive());
+
+        //the event already queued is still delivered, the one given up on is not
+        delegate.release();
+        delegate.awaitEvents(2);
+        Thread.sleep(100);
+        assertEquals(List.of("NO_ALARM", "PENDING_ALARM"), delegate.events());
+    }
+
+    //Tests that the lag metrics report how long events waited behind a slow listener
+    @Test
+    @DisplayName("Queue 5")
+    public void lagMetrics_reportTimeSpentQueued() throws InterruptedException {
+        RecordingListener delegate = new RecordingListener();
+        QueuedStatusListener listener = new QueuedStatusListener(delegate, 8, OverflowPolicy.DROP_OLDEST);
+        delegate.holdFirstEvent(listener);
+        listener.notify(AlarmStatus.ALARM);
+        Thread.sleep(100);
+
+        delegate.release();
+        delegate.awaitEvents(2);
+        awaitDelivered(listener, 2);
+        assertTrue(listener.getMaxLagNanos() >= Duration.ofMillis(100).toNanos(), "max lag: " + listener.getMaxLagNanos());
+        assertTrue(listener.getLastLagNanos() >= Duration.ofMillis(100).toNanos(), "last lag: " + listener.getLastLagNanos());
+        assertEquals(0, listener.getQueueDepth());
+        listener.close();
+    }
+
+    //Tests that a listener registered with a queue receives the service's events and is closed on removal
+    @Test
+    @DisplayName("Queue 6")
+    public void securityService_queuedListener_receivesEvents() throws InterruptedException {
+        SecurityService securityService = new SecurityService(mock(SecurityRepository.class), mock(ImageService.class));
+        RecordingListener delegate = new RecordingListener();
+        QueuedStatusListener listener = securityService.addStatusListener(delegate, 8, OverflowPolicy.COALESCE_LATEST);
+
+        securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        delegate.awaitEvents(1);
+        assertEquals(List.of("PENDING_ALARM"), delegate.events());
+
+        securityService.removeStatusListener(delegate);
+        listener.notify(AlarmStatus.ALARM);
+        Thread.sleep(100);
+        assertEquals(1, listener.getDeliveredCount());
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Thread.State.WAITING, thread.getState());
+    }
+
+    private static void awaitDelivered(QueuedStatusListener listener, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(listener.getDeliveredCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, listener.getDeliveredCount());
+    }
+
+    /**
+     * Records the events it receives. Can hold the dispatch thread inside the first event, so
+     * later events pile up in the queue.
+     */
+    private static class RecordingListener implements StatusListener {
+        private final List<String> events = new ArrayList<>();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile boolean holding;
+
+        //sends a NO_ALARM event and returns once the dispatch thread is stuck delivering it
+        void holdFirstEvent(QueuedStatusListener listener) throws InterruptedException {
+            holding = true;
+            listener.notify(AlarmStatus.NO_ALARM);
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        synchronized List<String> events() {
+            return new ArrayList<>(events);
+        }
+
+        synchronized void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(events.size() < count && System.nanoTime() < deadline) {
+                wait(10);
+            }
+            assertEquals(count, events.size(), "events: " + events);
+        }
+
+        @Override
+        public void notify(AlarmStatus status) {
+            record(status.toString());
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            record("cat " + catDetected);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            record("sensors");
+        }
+
+        private void record(String event) {
+            synchronized(this) {
+                events.add(event);
+                notifyAll();
+            }
+            if(holding) {
+                holding = false;
+                entered.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.udacity.security;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.udacity.security.data.AlarmStatus;
+import com.udacity.security.data.ArmingStatus;
+import com.udacity.security.data.MappedSensorTableRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorType;
+import com.udacity.security.http.SecurityHttpApi;
+import com.udacity.security.service.ConcurrentSecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for driving a SecurityService through the HTTP API.
+ */
+public class SecurityHttpApiTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedSensorTableRepositoryImpl securityRepository;
+    private ConcurrentSecurityService securityService;
+    private SecurityHttpApi api;
+
+    private record Response(int status, String body) {
+        JsonObject json() {
+            return JsonParser.parseString(body).getAsJsonObject();
+        }
+    }
+
+    @BeforeEach
+    void init() throws IOException {
+        securityRepository = new MappedSensorTableRepositoryImpl(directory);
+        securityService = new ConcurrentSecurityService(securityRepository, (image, threshold) -> image.getWidth() == 2);
+        api = new SecurityHttpApi(securityService, new InetSocketAddress("127.0.0.1", 0));
+        api.start();
+    }
+
+    @AfterEach
+    void close() {
+        api.close();
+        securityRepository.close();
+    }
+
+    //Tests that sensors can be added, activated and removed and the status follows
+    @Test
+    @DisplayName("Api 1")
+    public void sensorLifecycleOverHttp_changesAlarmStatus() throws IOException {
+
+        assertEquals(200, send("PUT", "/arming", "{\"armingStatus\":\"ARMED_AWAY\"}").status());
+        Response added = send("POST", "/sensors", "{\"name\":\"door\",\"sensorType\":\"DOOR\"}");
+        assertEquals(201, added.status());
+        String sensorId = added.json().get("sensorId").getAsString();
+
+        assertEquals(200, send("PUT", "/sensors/" + sensorId, "{\"active\":true}").status());
+        JsonObject status = send("GET", "/status").json();
+        assertEquals("PENDING_ALARM", status.get("alarmStatus").getAsString());
+        assertEquals(1, status.get("activeSensors").getAsInt());
+
+        JsonArray sensors = JsonParser.parseString(send("GET", "/sensors").body()).getAsJsonArray();
+        assertEquals(1, sensors.size());
+        assertTrue(sensors.get(0).getAsJsonObject().get("active").getAsBoolean());
+
+        assertEquals(200, send("POST", "/sensors/activations", "[{\"sensorId\":\"" + sensorId + "\",\"active\":false}]").status());
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertEquals(204, send("DELETE", "/sensors/" + sensorId).status());
+        assertTrue(securityService.getSensors().isEmpty());
+    }
+
+    //Tests that pictures are classified and bad requests are rejected without changing state
+    @Test
+    @DisplayName("Api 2")
+    public void imageOverHttp_catRaisesAlarm_badRequestsRejected() throws IOException {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        Response verdict = send("POST", "/images", png(new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB)));
+        assertEquals(200, verdict.status());
+        assertTrue(verdict.json().get("catDetected").getAsBoolean());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+        assertEquals(400, send("POST", "/images", "not a picture").status());
+        assertEquals(400, send("PUT", "/arming", "{\"armingStatus\":\"ARMED_SOMEWHERE\"}").status());
+        assertEquals(400, send("PUT", "/arming", "{").status());
+        assertEquals(404, send("PUT", "/sensors/unknown", "{\"active\":true}").status());
+        assertEquals(405, send("DELETE", "/status").status());
+        assertEquals(ArmingStatus.ARMED_HOME, securityService.getArmingStatus());
+    }
+
+    //Tests that alarm transitions are pushed to subscribers and missed ones are replayed on reconnect
+    @Test
+    @DisplayName("Api 3")
+    public void eventStream_pushesTransitions_resumesFromLastEventId() throws IOException {
+
+        HttpURLConnection first = subscribe(null);
+        BufferedReader firstEvents = events(first);
+        assertEquals(List.of("id: 0", "event: state", "data: {\"alarmStatus\":\"NO_ALARM\",\"armingStatus\":\"DISARMED\"}"), readEvent(firstEvents));
+        securityService.setAlarmStatus(AlarmStatus.ALARM);
+        assertEquals(List.of("id: 1", "event: alarm", "data: {\"alarmStatus\":\"ALARM\"}"), readEvent(firstEvents));
+        first.disconnect();
+
+        securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        securityService.processImage(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+
+        HttpURLConnection resumed = subscribe("1");
+        BufferedReader resumedEvents = events(resumed);
+        assertEquals(List.of("id: 2", "event: alarm", "data: {\"alarmStatus\":\"PENDING_ALARM\"}"), readEvent(resumedEvents));
+        assertEquals("id: 3", readEvent(resumedEvents).get(0));
+        resumed.disconnect();
+    }
+
+    //Tests that a subscriber that stops reading is disconnected instead of holding up the others
+    @Test
+    @DisplayName("Api 4")
+    public void eventStream_subscriberNotReading_disconnected() throws IOException, InterruptedException {
+
+        HttpURLConnection stalled = subscribe(null);
+        events(stalled);
+        awaitSubscribers(1);
+        for(int i = 0; i < 200_000 && api.getEventStream().getDisconnectedCount() == 0; i++) {
+            api.getEventStream().notify(i % 2 == 0 ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM);
+        }
+
+        assertEquals(1, api.getEventStream().getDisconnectedCount());
+        awaitSubscribers(0);
+        stalled.disconnect();
+    }
+
+    //Tests that malformed or mistyped bodies are client errors and failures inside the service are server errors
+    @Test
+    @DisplayName("Api 5")
+    public void badBodies_400_serviceFailures_500() throws IOException {
+        assertEquals(400, send("PUT", "/arming", "[\"ARMED_HOME\"]").status());
+        assertEquals(400, send("POST", "/sensors", "\"door\"").status());
+        assertEquals(400, send("POST", "/sensors/activations", "[{\"sensorId\":\"not-a-uuid\",\"active\":true}]").status());
+        assertEquals(400, send("POST", "/sensors/activations", "{\"sensorId\":null}").status());
+
+        ConcurrentSecurityService failing = new ConcurrentSecurityService(securityRepository, (image, threshold) -> false) {
+            @Override
+            public void setArmingStatus(ArmingStatus armingStatus) {
+                throw new IllegalStateException("repository unavailable");
+            }
+        };
+        SecurityHttpApi failingApi = new SecurityHttpApi(failing, new InetSocketAddress("127.0.0.1", 0));
+        failingApi.start();
+        try {
+            assertEquals(500, send(failingApi, "PUT", "/arming", "{\"armingStatus\":\"ARMED_HOME\"}".getBytes(StandardCharsets.UTF_8)).status());
+        } finally {
+            failingApi.close();
+        }
+    }
+
+    //Tests that listing sensors while they are being added never fails
+    @Test
+    @DisplayName("Api 6")
+    public void listSensors_whileAdding_alwaysSucceeds() throws Exception {
+        Thread adder = new Thread(() -> {
+            for(int i = 0; i < 2_000; i++) {
+                securityService.addSensor(new Sensor("Sensor " + i, SensorType.MOTION));
+            }
+        });
+        adder.start();
+        while(adder.isAlive()) {
+            assertEquals(200, send("GET", "/sensors").status());
+        }
+        adder.join();
+        assertEquals(2_000, JsonParser.parseString(send("GET", "/sensors").body()).getAsJsonArray().size());
+    }
+
+    private HttpURLConnection subscribe(String lastEventId) throws IOException {
+        URL url = URI.create("http://127.0.0.1:" + api.getAddress().getPort() + "/events").toURL();
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setReadTimeout(5000);
+        if(lastEventId != null) {
+            connection.setRequestProperty("Last-Event-ID", lastEventId);
+        }
+        assertEquals(200, connection.getResponseCode());
+        return connection;
+    }
+
+    private static BufferedReader events(HttpURLConnection connection) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+        assertEquals("retry: 2000", reader.readLine());
+        assertEquals("", reader.readLine());
+        return reader;
+    }
+
+    //lines of the next event, skipping keepalive comments
+    private static List<String> readEvent(BufferedReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for(String line = reader.readLine(); line != null && !line.isEmpty(); line = reader.readLine()) {
+            if(!line.startsWith(":")) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private void awaitSubscribers(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(api.getEventStream().getSubscriberCount() != count) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for " + count + " subscribers");
+            Thread.sleep(5);
+        }
+    }
+
+    private Response send(String method, String path) throws IOException {
+        return send(method, path, (byte[]) null);
+    }
+
+    private Response send(String method, String path, String body) throws IOException {
+        return send(method, path, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Response send(String method, String path, byte[] body) throws IOException {
+        return send(api, method, path, body);
+    }
+
+    private static Response send(SecurityHttpApi target, String method, String path, byte[] body) throws IOException {
+        URL url = URI.create("http://127.0.0.1:" + target.getAddress().getPort() + path).toURL();
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if(body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        String responseBody = in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        connection.disconnect();
+        return new Response(status, responseBody);
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,102 @@
+package com.udacity.security;
+
+import com.udacity.security.data.*;
+import com.udacity.security.service.LatencyHistogram;
+import com.udacity.security.service.MetricsSnapshot;
+import com.udacity.security.service.SecurityMetrics;
+import com.udacity.security.service.SecurityService;
+import com.udacity.security.service.TextMetricsExporter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the latency histograms and the metrics a SecurityService records.
+ */
+public class SecurityMetricsTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedSensorTableRepositoryImpl securityRepository;
+    private SecurityService securityService;
+
+    @BeforeEach
+    void init() {
+        securityRepository = new MappedSensorTableRepositoryImpl(directory);
+        securityService = new SecurityService(securityRepository, (image, threshold) -> true);
+    }
+
+    @AfterEach
+    void close() {
+        securityRepository.close();
+    }
+
+    //Tests that histogram percentiles stay within the bucket precision of the exact values
+    @Test
+    @DisplayName("Metrics 1")
+    public void histogramPercentiles_withinBucketPrecision() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.count());
+        assertEquals(100_000_000L, snapshot.maxNanos());
+        assertEquals(50_000_000, snapshot.p50Nanos(), 50_000_000 * 0.0625);
+        assertEquals(99_000_000, snapshot.p99Nanos(), 99_000_000 * 0.0625);
+        assertTrue(snapshot.p50Nanos() >= 50_000_000);
+        assertTrue(snapshot.p999Nanos() <= snapshot.maxNanos());
+    }
+
+    //Tests that an instrumented service counts alarm transitions and times sensor events and images
+    @Test
+    @DisplayName("Metrics 2")
+    public void enabledMetrics_recordTransitionsAndLatencies() {
+
+        SecurityMetrics metrics = new SecurityMetrics();
+        securityService.setMetrics(metrics);
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        securityService.changeSensorActivationStatus(sensor, true);
+        securityService.changeSensorActivationStatus(sensor, false);
+        securityService.processImage(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.alarmTransitions().get(AlarmStatus.PENDING_ALARM));
+        assertEquals(1, snapshot.alarmTransitions().get(AlarmStatus.NO_ALARM));
+        assertEquals(1, snapshot.alarmTransitions().get(AlarmStatus.ALARM));
+        assertEquals(2, snapshot.sensorEventToNotify().count());
+        assertEquals(1, snapshot.imageClassification().count());
+        assertTrue(snapshot.repositoryPersistence().count() >= 5);
+        assertTrue(TextMetricsExporter.format(snapshot).contains("alarm.transitions.ALARM count=1"));
+    }
+
+    //Tests that the default metrics of a service record nothing
+    @Test
+    @DisplayName("Metrics 3")
+    public void defaultMetrics_recordNothing() {
+
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.changeSensorActivationStatus(sensor, true);
+
+        assertFalse(securityService.getMetrics().isEnabled());
+        assertEquals(0, securityService.getMetrics().startTimer());
+        MetricsSnapshot snapshot = securityService.getMetrics().snapshot();
+        assertEquals(0, snapshot.sensorEventToNotify().count());
+        assertEquals(0, snapshot.alarmTransitions().get(AlarmStatus.PENDING_ALARM));
+    }
+}
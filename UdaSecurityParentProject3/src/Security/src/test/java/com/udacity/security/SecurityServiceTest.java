@@ -16,8 +16,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.awt.image.BufferedImage;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -271,6 +278,140 @@ public class SecurityServiceTest {
 
     }
 
+    //Tests that the active sensor counters follow activations, deactivations and arming without a scan
+    @Test
+    @DisplayName("Test 18")
+    public void activeSensorCount_tracksSensorChanges_perSensorType() {
+
+        when(securityRepository.getSensors()).thenReturn(sensors);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        securityService.changeSensorActivationStatus(sensor1, true);
+        securityService.changeSensorActivationStatus(sensor1, true);
+        securityService.changeSensorActivationStatus(sensor3, true);
+
+        assertEquals(2, securityService.getActiveSensorCount());
+        assertEquals(1, securityService.getActiveSensorCount(SensorType.DOOR));
+        assertEquals(0, securityService.getActiveSensorCount(SensorType.WINDOW));
+
+        securityService.changeSensorActivationStatus(sensor1, false);
+        assertEquals(1, securityService.getActiveSensorCount());
+        assertFalse(securityService.allSensorsInactive());
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertTrue(securityService.allSensorsInactive());
+        assertFalse(sensor3.getActive());
+    }
+
+    //Tests that the debug verification mode notices a sensor changed behind the service's back
+    @Test
+    @DisplayName("Test 19")
+    public void verifyActiveSensorCount_detectsCounterDrift() {
+
+        when(securityRepository.getSensors()).thenReturn(sensors);
+        securityService.setVerifyActiveSensorCount(true);
+        assertTrue(securityService.allSensorsInactive());
+
+        sensor2.setActive(true);
+
+        assertThrows(IllegalStateException.class, () -> securityService.allSensorsInactive());
+    }
+
+    //Tests that a batch of sensor events persists once, sets the final alarm status once and notifies once
+    @Test
+    @DisplayName("Test 20")
+    public void sensorBatch_persistsOnce_and_setsFinalAlarmStatusOnce() {
+
+        StatusListener listener = mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        when(securityRepository.getSensor(sensor1.getSensorId())).thenReturn(sensor1);
+        when(securityRepository.getSensor(sensor2.getSensorId())).thenReturn(sensor2);
+
+        securityService.changeSensorActivationStatus(List.of(
+                new SensorActivation(sensor1.getSensorId(), true),
+                new SensorActivation(sensor2.getSensorId(), true),
+                new SensorActivation(UUID.randomUUID(), true)));
+
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        verify(securityRepository, times(1)).updateSensors(anyCollection());
+        verify(securityRepository, never()).updateSensor(any(Sensor.class));
+        verify(listener, times(1)).notify(AlarmStatus.ALARM);
+        verify(listener, times(1)).sensorStatusChanged();
+        assertEquals(2, securityService.getActiveSensorCount());
+    }
+
+    //Tests that an image scanned asynchronously applies its verdict on the given executor once analysis completes
+    @Test
+    @DisplayName("Test 21")
+    public void imageProcessedAsync_appliesVerdictOnExecutor_afterAnalysisCompletes() throws InterruptedException {
+
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(imageService.imageContainsCat(any(),anyFloat())).thenReturn(true);
+        BlockingQueue<Runnable> verdicts = new LinkedBlockingQueue<>();
+
+        CompletableFuture<Boolean> result = securityService.processImageAsync(mock(BufferedImage.class), verdicts::add);
+        Runnable verdict = verdicts.poll(5, TimeUnit.SECONDS);
+
+        assertNotNull(verdict);
+        verify(securityRepository, never()).setAlarmStatus(any(AlarmStatus.class));
+        verdict.run();
+        assertTrue(result.join());
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    //Tests that images are classified with the configured confidence threshold instead of the default
+    @Test
+    @DisplayName("Test 22")
+    public void confidenceThresholdChanged_imageClassifiedWithNewThreshold() {
+
+        assertEquals(SecurityService.DEFAULT_CAT_CONFIDENCE_THRESHOLD, securityService.getCatConfidenceThreshold());
+        securityService.setCatConfidenceThreshold(80.0f);
+        securityService.processImage(mock(BufferedImage.class));
+
+        verify(imageService, times(1)).imageContainsCat(any(), eq(80.0f));
+        assertThrows(IllegalArgumentException.class, () -> securityService.setCatConfidenceThreshold(101.0f));
+        assertThrows(IllegalArgumentException.class, () -> securityService.setCatConfidenceThreshold(Float.NaN));
+    }
+
+    //Tests that a threshold property that is not a number from 0 to 100 falls back to the default
+    @Test
+    @DisplayName("Test 23")
+    public void confidenceThresholdPropertyInvalid_defaultUsed() {
+        try {
+            System.setProperty("catpoint.catConfidenceThreshold", " 70 ");
+            assertEquals(70.0f, new SecurityService(securityRepository, imageService).getCatConfidenceThreshold());
+            for(String invalid : List.of("seventy", "", "150", "-1", "NaN")) {
+                System.setProperty("catpoint.catConfidenceThreshold", invalid);
+                assertEquals(SecurityService.DEFAULT_CAT_CONFIDENCE_THRESHOLD,
+                        new SecurityService(securityRepository, imageService).getCatConfidenceThreshold(), invalid);
+            }
+        } finally {
+            System.clearProperty("catpoint.catConfidenceThreshold");
+        }
+    }
+
+    //Tests that arming saves all the sensors it switches off with a single repository write
+    @Test
+    @DisplayName("Test 24")
+    public void systemArmed_deactivatedSensorsPersistedOnce() {
+
+        when(securityRepository.getSensors()).thenReturn(sensors);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        securityService.changeSensorActivationStatus(sensor1, true);
+        securityService.changeSensorActivationStatus(sensor2, true);
+        securityService.changeSensorActivationStatus(sensor3, true);
+        clearInvocations(securityRepository);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        verify(securityRepository, times(1)).updateSensors(argThat(changed -> changed.size() == 3));
+        verify(securityRepository, never()).updateSensor(any(Sensor.class));
+        assertTrue(sensors.stream().noneMatch(Sensor::getActive));
+    }
+
 
 
 }
@@ -0,0 +1,117 @@
+package com.udacity.security;
+
+import com.google.gson.Gson;
+import com.udacity.security.data.PersistenceMode;
+import com.udacity.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.security.data.Sensor;
+import com.udacity.security.data.SensorCodec;
+import com.udacity.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the binary sensor encoding and migrating sensors stored as JSON.
+ */
+public class SensorCodecTest {
+
+    private Preferences prefs;
+
+    @BeforeEach
+    void init() {
+        prefs = Preferences.userRoot().node("com/udacity/security/test/" + UUID.randomUUID());
+    }
+
+    @AfterEach
+    void close() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    //Tests that every field survives encoding, including flags past the first byte and unusual names
+    @Test
+    @DisplayName("Codec 1")
+    public void encodeDecode_roundTripsAllFields() {
+        Set<Sensor> sensors = new TreeSet<>();
+        for(int i = 0; i < 20; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 3 == 0);
+            sensors.add(sensor);
+        }
+        sensors.add(new Sensor("Küchenfenster 🐱", SensorType.WINDOW));
+        sensors.add(new Sensor("x".repeat(300), SensorType.MOTION));
+
+        byte[] encoded = SensorCodec.encode(sensors);
+        Set<Sensor> decoded = SensorCodec.decode(encoded);
+
+        assertEquals(sensors, decoded);
+        List<Sensor> expected = new ArrayList<>(sensors);
+        List<Sensor> actual = new ArrayList<>(decoded);
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            assertEquals(expected.get(i).getSensorType(), actual.get(i).getSensorType());
+            assertEquals(expected.get(i).getActive(), actual.get(i).getActive());
+        }
+        assertTrue(encoded.length < new Gson().toJson(sensors).length() / 2);
+
+        encoded[4] = 2;
+        assertThrows(IllegalArgumentException.class, () -> SensorCodec.decode(encoded));
+    }
+
+    //Tests that sensors saved as JSON by earlier versions load, and are saved in binary afterwards
+    @Test
+    @DisplayName("Codec 2")
+    public void sensorsStoredAsJson_loaded_thenRewrittenAsBinary() {
+        Set<Sensor> sensors = new TreeSet<>();
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        door.setActive(true);
+        sensors.add(door);
+        sensors.add(new Sensor("Hall", SensorType.MOTION));
+        prefs.put("SENSORS", new Gson().toJson(sensors));
+
+        PretendDatabaseSecurityRepositoryImpl migrated = openRepository();
+        assertEquals(sensors, migrated.getSensors());
+        assertTrue(migrated.getSensor(door.getSensorId()).getActive());
+        migrated.addSensor(new Sensor("Garage", SensorType.WINDOW));
+        migrated.close();
+
+        assertFalse(prefs.get("SENSORS", "").startsWith("["));
+        PretendDatabaseSecurityRepositoryImpl reloaded = openRepository();
+        assertEquals(3, reloaded.getSensors().size());
+        assertTrue(reloaded.getSensor(door.getSensorId()).getActive());
+        reloaded.close();
+    }
+
+    //Tests that sensors encoded out of order decode into a fully working sorted set
+    @Test
+    @DisplayName("Codec 3")
+    public void unorderedEncoding_decodesSorted() {
+        List<Sensor> sensors = new ArrayList<>();
+        for(int i = 9; i >= 0; i--) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.DOOR));
+        }
+
+        TreeSet<Sensor> decoded = (TreeSet<Sensor>) SensorCodec.decode(SensorCodec.encode(sensors));
+
+        assertEquals(new TreeSet<>(sensors), decoded);
+        assertEquals("Sensor 0", decoded.first().getName());
+        assertEquals(3, decoded.subSet(sensors.get(8), sensors.get(5)).size());
+        assertEquals(2, decoded.headSet(sensors.get(7)).size());
+    }
+
+    private PretendDatabaseSecurityRepositoryImpl openRepository() {
+        return new PretendDatabaseSecurityRepositoryImpl(prefs, PersistenceMode.WRITE_THROUGH,
+                Duration.ofMillis(250), Duration.ofSeconds(2));
+    }
+}
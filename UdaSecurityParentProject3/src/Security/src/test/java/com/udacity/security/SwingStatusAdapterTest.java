@@ -0,0 +1,113 @@
+package com.udacity.security;
+
+import com.udacity.security.application.StatusListener;
+import com.udacity.security.application.SwingStatusAdapter;
+import com.udacity.security.data.AlarmStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for coalescing status events onto the event dispatch thread.
+ */
+public class SwingStatusAdapterTest {
+
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final List<Boolean> onDispatchThread = new CopyOnWriteArrayList<>();
+
+    private final StatusListener panel = new StatusListener() {
+        @Override
+        public void notify(AlarmStatus status) {
+            record(status.toString());
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            record("cat " + catDetected);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            record("sensors");
+        }
+    };
+
+    private void record(String event) {
+        onDispatchThread.add(SwingUtilities.isEventDispatchThread());
+        delivered.add(event);
+    }
+
+    //Tests that a burst of events from several threads reaches the panels as one update with the latest state
+    @Test
+    @DisplayName("Adapter 1")
+    public void burstFromSeveralThreads_deliveredOnceOnDispatchThread_latestStateWins() throws InterruptedException {
+        SwingStatusAdapter adapter = new SwingStatusAdapter(Duration.ofMillis(50));
+        adapter.addListener(panel);
+        CountDownLatch done = new CountDownLatch(4);
+        CountDownLatch burstSent = new CountDownLatch(1);
+
+        //hold the dispatch thread so the whole burst lands in a single frame
+        SwingUtilities.invokeLater(() -> awaitQuietly(burstSent));
+        for(int t = 0; t < 4; t++) {
+            new Thread(() -> {
+                for(int i = 0; i < 1000; i++) {
+                    adapter.notify(AlarmStatus.PENDING_ALARM);
+                    adapter.catDetected(true);
+                    adapter.sensorStatusChanged();
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        adapter.notify(AlarmStatus.ALARM);
+        burstSent.countDown();
+        awaitDelivered(3);
+
+        assertEquals(List.of("ALARM", "cat true", "sensors"), delivered);
+        assertFalse(onDispatchThread.contains(false));
+        assertEquals(12001, adapter.getEventCount());
+        assertEquals(1, adapter.getFlushCount());
+    }
+
+    //Tests that events arriving right after an update wait for the next frame instead of being dropped
+    @Test
+    @DisplayName("Adapter 2")
+    public void eventAfterUpdate_deliveredOnNextFrame() throws InterruptedException {
+        SwingStatusAdapter adapter = new SwingStatusAdapter(Duration.ofMillis(200));
+        adapter.addListener(panel);
+
+        adapter.notify(AlarmStatus.PENDING_ALARM);
+        awaitDelivered(1);
+        long start = System.nanoTime();
+        adapter.notify(AlarmStatus.NO_ALARM);
+        awaitDelivered(2);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(List.of("PENDING_ALARM", "NO_ALARM"), delivered);
+        assertEquals(2, adapter.getFlushCount());
+    }
+
+    private void awaitDelivered(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(delivered.size() < count) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for update " + count);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}